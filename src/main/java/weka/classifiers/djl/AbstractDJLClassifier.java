@@ -0,0 +1,3156 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * AbstractDJLClassifier.java
+ * Copyright (C) 2025 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.classifiers.djl;
+
+import ai.djl.Model;
+import ai.djl.inference.Predictor;
+import ai.djl.ndarray.NDArray;
+import ai.djl.ndarray.NDArrays;
+import ai.djl.ndarray.NDList;
+import ai.djl.ndarray.NDManager;
+import ai.djl.ndarray.types.DataType;
+import ai.djl.ndarray.types.Shape;
+import ai.djl.nn.Block;
+import ai.djl.nn.ParallelBlock;
+import ai.djl.nn.Parameter;
+import ai.djl.nn.SequentialBlock;
+import ai.djl.repository.zoo.ZooModel;
+import ai.djl.training.EasyTrain;
+import ai.djl.training.ParameterStore;
+import ai.djl.training.Trainer;
+import ai.djl.training.TrainingConfig;
+import ai.djl.training.dataset.Batch;
+import ai.djl.training.dataset.Dataset;
+import ai.djl.training.dataset.RandomAccessDataset;
+import ai.djl.training.dataset.Record;
+import ai.djl.translate.Translator;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import weka.classifiers.RandomizableClassifier;
+import weka.classifiers.UpdateableClassifier;
+import weka.classifiers.djl.dataset.InstancesDataset;
+import weka.classifiers.djl.block.MixedPrecisionBlock;
+import weka.classifiers.djl.dataset.IndexedDataset;
+import weka.classifiers.djl.dataset.InstancesDatasetCache;
+import weka.classifiers.djl.dataset.PermutationSampler;
+import weka.classifiers.djl.distributed.TcpAllReduce;
+import weka.classifiers.djl.idgenerator.FixedID;
+import weka.classifiers.djl.idgenerator.IDGenerator;
+import weka.classifiers.djl.networkgenerator.NetworkGenerator;
+import weka.classifiers.djl.networkgenerator.TabNetGenerator;
+import weka.classifiers.djl.outputdirgenerator.FixedDir;
+import weka.classifiers.djl.outputdirgenerator.OutputDirGenerator;
+import weka.classifiers.djl.trainingconfiggenerator.TrainingConfigGenerator;
+import weka.classifiers.djl.translator.FloatFeaturesTranslator;
+import weka.classifiers.djl.translator.PrecisionTranslator;
+import weka.core.Capabilities;
+import weka.core.Capabilities.Capability;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.Option;
+import weka.core.UniqueIDs;
+import weka.core.Utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.Vector;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ancestor for classifiers that use Deep Java Library for building models.
+ * Handles the generation of network, training config, model ID and output
+ * directory, the training, saving/loading of the model parameters and the
+ * (batched) predictions. Derived classes determine the type of class
+ * attribute, the default training config and how the output of the network
+ * is turned into a distribution.
+ * <br>
+ * Optionally, an ensemble of networks can be trained on bootstrap samples
+ * of the (shared) featurized training data, with the members being trained
+ * concurrently and their outputs averaged within a single network.
+ * Alternatively, a single network can be trained data-parallel across
+ * worker processes (see {@link DistributedWorker}), synchronizing the
+ * gradients after each mini-batch, or as replicas in threads that get
+ * trained on disjoint shards with their parameters getting averaged
+ * periodically (local SGD).
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public abstract class AbstractDJLClassifier
+  extends RandomizableClassifier
+  implements UpdateableClassifier, AutoCloseable {
+
+  private static final long serialVersionUID = 2920839366218009516L;
+
+  /** the number of quantile bins for stratifying by a numeric class. */
+  public static final int NUM_STRATA = 10;
+
+  /** for keeping track of models. */
+  protected static Map<String,Model> m_Models = new HashMap<>();
+
+  /** the network generator to use. */
+  protected NetworkGenerator m_Network = new TabNetGenerator();
+
+  /** the percentage for the network's training set. */
+  protected int m_TrainPercentage = 80;
+
+  /** how to split the data into train/validation sets. */
+  protected SplitStrategy m_SplitStrategy = SplitStrategy.RANDOM;
+
+  /** the number of epochs after which to evaluate the validation set. */
+  protected int m_ValidationInterval = 1;
+
+  /** the batchsize. */
+  protected int m_MiniBatchSize = 32;
+
+  /** the number of epochs to train. */
+  protected int m_NumEpochs = 20;
+
+  /** the model ID/prefix generator. */
+  protected IDGenerator m_ID = new FixedID();
+
+  /** the output dir generator. */
+  protected OutputDirGenerator m_OutputDir = new FixedDir();
+
+  /** the training config generator. */
+  protected TrainingConfigGenerator m_TrainingConfig = getDefaultTrainingConfig();
+
+  /** whether to support parallel execution. */
+  protected boolean m_SupportParallelExecution = false;
+
+  /** the saved model to warm-start from (dir|id). */
+  protected String m_WarmStart = "";
+
+  /** the precision to use for inference. */
+  protected Precision m_InferencePrecision = Precision.FLOAT32;
+
+  /** the precision for the computations during training (parameters stay float32). */
+  protected Precision m_TrainingPrecision = Precision.FLOAT32;
+
+  /** whether to use fused preprocessing. */
+  protected boolean m_FusedPreprocessing = false;
+
+  /** whether to store the features in sparse format. */
+  protected boolean m_SparseStorage = false;
+
+  /** whether to add missing value indicators (fused preprocessing). */
+  protected boolean m_MissingIndicators = false;
+
+  /** the number of networks in the ensemble (1 = no ensemble). */
+  protected int m_EnsembleSize = 1;
+
+  /** the number of ensemble members to train in parallel (0 = number of cores). */
+  protected int m_EnsembleSlots = 1;
+
+  /** the number of replicas for training with parameter averaging (1 = no averaging). */
+  protected int m_NumReplicas = 1;
+
+  /** the number of epochs after which to average the parameters of the replicas. */
+  protected int m_AveragingInterval = 1;
+
+  /** the number of additional worker processes for data-parallel training (0 = single process). */
+  protected int m_NumWorkers = 0;
+
+  /** the port the workers connect to (0 = any free port). */
+  protected int m_WorkerPort = 0;
+
+  /** whether the workers get started manually (e.g., on other machines) rather than spawned locally. */
+  protected boolean m_RemoteWorkers = false;
+
+  /** the seconds to wait for workers to connect or respond. */
+  protected int m_WorkerTimeout = TcpAllReduce.DEFAULT_TIMEOUT;
+
+  /** the number of labels above which nominal features get embedded (0 = always one-hot). */
+  protected int m_EmbeddingThreshold = 0;
+
+  /** the size of the embeddings (0 = automatic). */
+  protected int m_EmbeddingSize = 0;
+
+  /** whether to share the prepared training data with concurrent builds on the same data. */
+  protected boolean m_ShareDatasets = false;
+
+  /** whether to use pre-allocated buffers for batch predictions. */
+  protected boolean m_BufferedPrediction = false;
+
+  /** the header. */
+  protected Instances m_Header;
+
+  /** the DJL dataset. */
+  protected transient InstancesDataset m_Dataset;
+
+  /** the feature translator to use. */
+  protected transient Translator<float[], float[]> m_Translator;
+
+  /** the model. */
+  protected transient Model m_Model;
+
+  /** the predictor to use. */
+  protected transient Predictor<float[], float[]> m_Predictor;
+
+  /** the pool of buffered predictors for batch predictions. */
+  protected transient PredictorPool m_PredictorPool;
+
+  /** the dataset config. */
+  protected String m_DatasetConfig;
+
+  /** the ID of the trained model. */
+  protected String m_ModelID;
+
+  /** the directory of the trained model. */
+  protected File m_ModelDir;
+
+  /** the training config in use (retains the optimizer state for fine-tuning). */
+  protected transient TrainingConfig m_ActiveTrainingConfig;
+
+  /** the buffered instances for incremental updates. */
+  protected transient Instances m_UpdateBuffer;
+
+  /** the report on the effect of the precision conversion. */
+  protected String m_PrecisionReport;
+
+  /**
+   * Returns the default training config generator.
+   *
+   * @return		the default
+   */
+  protected abstract TrainingConfigGenerator getDefaultTrainingConfig();
+
+  /**
+   * Returns whether the network output gets turned into probabilities via
+   * softmax, i.e., whether the model is a classification one.
+   *
+   * @return		true if softmax gets applied
+   */
+  protected abstract boolean hasSoftmaxOutput();
+
+  /**
+   * Computes the sum of the errors for the batch (used for evaluating the model
+   * on the validation set).
+   *
+   * @param output	the output of the network (batch x outputs)
+   * @param labels	the stored labels (batch x labels)
+   * @return		the sum of the errors
+   */
+  protected abstract double computeBatchError(NDArray output, NDArray labels);
+
+  /**
+   * Turns the sum of the errors into the final error measure.
+   *
+   * @param sum		the sum of the errors
+   * @param count	the number of rows
+   * @return		the error
+   */
+  protected abstract double finalizeError(double sum, long count);
+
+  /**
+   * Returns the name of the error measure.
+   *
+   * @return		the name
+   */
+  protected abstract String getErrorName();
+
+  /**
+   * Returns an enumeration of all the available options..
+   *
+   * @return an enumeration of all available options.
+   */
+  @Override
+  public Enumeration<Option> listOptions() {
+    Vector<Option> 	result;
+    Enumeration<Option>	enm;
+
+    result = new Vector<>();
+
+    result.add(new Option(
+      "\tThe network generator to use.\n"
+	+ "\t(default: " + TabNetGenerator.class.getName() + ")",
+      "network", 1, "-network <classname + options>"));
+
+    result.add(new Option(
+      "\tThe percentage of the dataset to use for training (1-100).\n"
+	+ "\tThe rest will get used for validation, 100 to train on all\n"
+	+ "\tthe data without validation.\n"
+	+ "\t(default: 80)",
+      "train-percentage", 1, "-train-percentage <int>"));
+
+    result.add(new Option(
+      "\tHow to split the dataset into train/validation sets: random rows,\n"
+	+ "\tordered (the last rows get used for validation, e.g., time series)\n"
+	+ "\tor stratified (by class label or " + NUM_STRATA + " quantiles of a numeric class).\n"
+	+ "\t(default: " + SplitStrategy.RANDOM + ")",
+      "split-strategy", 1, "-split-strategy <" + Utils.arrayToString(SplitStrategy.values()).replace(",", "|") + ">"));
+
+    result.add(new Option(
+      "\tThe number of epochs after which to evaluate the validation set\n"
+	+ "\t(the last epoch always gets evaluated).\n"
+	+ "\t(default: 1)",
+      "validation-interval", 1, "-validation-interval <int>"));
+
+    result.add(new Option(
+      "\tThe size to use for the mini batches.\n"
+	+ "\t(default: 32)",
+      "mini-batch-size", 1, "-mini-batch-size <int>"));
+
+    result.add(new Option(
+      "\tThe number of epochs to use for training.\n"
+	+ "\t(default: 20)",
+      "num-epochs", 1, "-num-epochs <int>"));
+
+    result.add(new Option(
+      "\tThe ID generator to use (ID = prefix of model).\n"
+	+ "\t(default: " + FixedID.class.getName() + ")",
+      "id", 1, "-id <classname + options>"));
+
+    result.add(new Option(
+      "\tThe output directory generator to use.\n"
+	+ "\t(default: " + FixedDir.class.getName() + ")",
+      "output-dir", 1, "-output-dir <classname + options>"));
+
+    result.add(new Option(
+      "\tThe training config generator to use.\n"
+	+ "\t(default: " + getDefaultTrainingConfig().getClass().getName() + ")",
+      "training-config", 1, "-training-config <classname + options>"));
+
+    result.add(new Option(
+      "\tWhether to enable support for parallel execution, \n"
+	+ "\trequires user to manually delete left-over model files (.params).\n"
+	+ "\t(default: disabled)",
+      "support-parallel-execution", 0, "-support-parallel-execution"));
+
+    result.add(new Option(
+      "\tThe previously saved model to initialize the network parameters with,\n"
+	+ "\tin the format 'dir|id'. The dataset structure must be compatible.\n"
+	+ "\t(default: none)",
+      "warm-start", 1, "-warm-start <dir|id>"));
+
+    result.add(new Option(
+      "\tThe precision to convert the network parameters to after training,\n"
+	+ "\tfor smaller and faster models during inference.\n"
+	+ "\t(default: " + Precision.FLOAT32 + ")",
+      "inference-precision", 1, "-inference-precision <" + Utils.arrayToString(Precision.values()).replace(",", "|") + ">"));
+
+    result.add(new Option(
+      "\tThe precision for the forward/backward passes during training, with\n"
+	+ "\tthe parameters remaining in " + Precision.FLOAT32 + " (mixed precision).\n"
+	+ "\t" + Precision.FLOAT16 + " is not supported.\n"
+	+ "\t(default: " + Precision.FLOAT32 + ")",
+      "training-precision", 1, "-training-precision <" + Precision.FLOAT32 + "|" + Precision.BFLOAT16 + ">"));
+
+    result.add(new Option(
+      "\tWhether to perform the normalization of numeric features and the\n"
+	+ "\tone-hot encoding of nominal ones within the network, using\n"
+	+ "\tstatistics computed once on the training data.\n"
+	+ "\t(default: disabled)",
+      "fused-preprocessing", 0, "-fused-preprocessing"));
+
+    result.add(new Option(
+      "\tWhether to store the features in compressed sparse row format,\n"
+	+ "\tonly visiting the non-zero values of the instances.\n"
+	+ "\tRequires fused preprocessing.\n"
+	+ "\t(default: disabled)",
+      "sparse-storage", 0, "-sparse-storage"));
+
+    result.add(new Option(
+      "\tThe number of networks in the ensemble, each trained on a bootstrap\n"
+	+ "\tsample of the training data; their outputs get averaged.\n"
+	+ "\t(default: 1)",
+      "ensemble-size", 1, "-ensemble-size <int>"));
+
+    result.add(new Option(
+      "\tThe number of ensemble members to train in parallel, 0 for number of cores.\n"
+	+ "\t(default: 1)",
+      "ensemble-slots", 1, "-ensemble-slots <int>"));
+
+    result.add(new Option(
+      "\tThe number of replicas to train in parallel threads on disjoint shards\n"
+	+ "\tof the training data, averaging their parameters periodically, 1 to disable.\n"
+	+ "\t(default: 1)",
+      "num-replicas", 1, "-num-replicas <int>"));
+
+    result.add(new Option(
+      "\tThe number of epochs after which to average the parameters of the replicas.\n"
+	+ "\t(default: 1)",
+      "averaging-interval", 1, "-averaging-interval <int>"));
+
+    result.add(new Option(
+      "\tThe number of additional worker processes for data-parallel training,\n"
+	+ "\tsynchronizing the gradients after each mini-batch, 0 for single process.\n"
+	+ "\tRequires fused preprocessing.\n"
+	+ "\t(default: 0)",
+      "num-workers", 1, "-num-workers <int>"));
+
+    result.add(new Option(
+      "\tThe port that the workers connect to, 0 for any free port.\n"
+	+ "\t(default: 0)",
+      "worker-port", 1, "-worker-port <int>"));
+
+    result.add(new Option(
+      "\tWhether the workers get started manually (e.g., on other machines,\n"
+	+ "\tvia " + DistributedWorker.class.getName() + ") instead of locally.\n"
+	+ "\t(default: disabled)",
+      "remote-workers", 0, "-remote-workers"));
+
+    result.add(new Option(
+      "\tThe number of seconds to wait for the workers to connect or respond.\n"
+	+ "\t(default: " + TcpAllReduce.DEFAULT_TIMEOUT + ")",
+      "worker-timeout", 1, "-worker-timeout <int>"));
+
+    result.add(new Option(
+      "\tWhether to add indicator columns for features with missing values\n"
+	+ "\tin the training data (otherwise missing values only get imputed).\n"
+	+ "\tRequires fused preprocessing.\n"
+	+ "\t(default: disabled)",
+      "missing-indicators", 0, "-missing-indicators"));
+
+    result.add(new Option(
+      "\tThe number of labels above which nominal features get mapped onto\n"
+	+ "\ta learned embedding instead of getting one-hot encoded, 0 to disable.\n"
+	+ "\tRequires fused preprocessing.\n"
+	+ "\t(default: 0)",
+      "embedding-threshold", 1, "-embedding-threshold <int>"));
+
+    result.add(new Option(
+      "\tThe size of the learned embeddings, 0 for half the number of labels\n"
+	+ "\t(capped at 50).\n"
+	+ "\t(default: 0)",
+      "embedding-size", 1, "-embedding-size <int>"));
+
+    result.add(new Option(
+      "\tWhether to share the prepared (featurized) training data with\n"
+	+ "\tother classifiers in this process that train on the same data\n"
+	+ "\tusing the same dataset structure.\n"
+	+ "\t(default: disabled)",
+      "share-datasets", 0, "-share-datasets"));
+
+    result.add(new Option(
+      "\tWhether to make batch predictions with pre-allocated input tensors\n"
+	+ "\tof the batch size (tail batch gets padded), using a pool of\n"
+	+ "\tpredictors for concurrent predictions.\n"
+	+ "\t(default: disabled)",
+      "buffered-prediction", 0, "-buffered-prediction"));
+
+    enm = super.listOptions();
+    while (enm.hasMoreElements())
+      result.add(enm.nextElement());
+
+    return result.elements();
+  }
+
+  /**
+   * Sets the OptionHandler's options using the given list. All options
+   * will be set (or reset) during this call (i.e. incremental setting
+   * of options is not possible).
+   *
+   * @param options the list of options as an array of strings
+   * @throws Exception if an option is not supported
+   */
+  @Override
+  public void setOptions(String[] options) throws Exception {
+    String	tmpStr;
+    String[]	tmpOpts;
+
+    tmpStr = Utils.getOption("network", options);
+    if (tmpStr.isEmpty()) {
+      setNetwork(new TabNetGenerator());
+    }
+    else {
+      tmpOpts    = Utils.splitOptions(tmpStr);
+      tmpStr     = tmpOpts[0];
+      tmpOpts[0] = "";
+      setNetwork((NetworkGenerator) Utils.forName(NetworkGenerator.class, tmpStr, tmpOpts));
+    }
+
+    tmpStr = Utils.getOption("train-percentage", options);
+    if (tmpStr.isEmpty())
+      setTrainPercentage(80);
+    else
+      setTrainPercentage(Integer.parseInt(tmpStr));
+
+    tmpStr = Utils.getOption("split-strategy", options);
+    if (tmpStr.isEmpty())
+      setSplitStrategy(SplitStrategy.RANDOM);
+    else
+      setSplitStrategy(SplitStrategy.valueOf(tmpStr));
+
+    tmpStr = Utils.getOption("validation-interval", options);
+    if (tmpStr.isEmpty())
+      setValidationInterval(1);
+    else
+      setValidationInterval(Integer.parseInt(tmpStr));
+
+    tmpStr = Utils.getOption("mini-batch-size", options);
+    if (tmpStr.isEmpty())
+      setMiniBatchSize(32);
+    else
+      setMiniBatchSize(Integer.parseInt(tmpStr));
+
+    tmpStr = Utils.getOption("num-epochs", options);
+    if (tmpStr.isEmpty())
+      setNumEpochs(20);
+    else
+      setNumEpochs(Integer.parseInt(tmpStr));
+
+    tmpStr = Utils.getOption("id", options);
+    if (tmpStr.isEmpty()) {
+      setID(new FixedID());
+    }
+    else {
+      tmpOpts    = Utils.splitOptions(tmpStr);
+      tmpStr     = tmpOpts[0];
+      tmpOpts[0] = "";
+      setID((IDGenerator) Utils.forName(IDGenerator.class, tmpStr, tmpOpts));
+    }
+
+    tmpStr = Utils.getOption("output-dir", options);
+    if (tmpStr.isEmpty()) {
+      setOutputDir(new FixedDir());
+    }
+    else {
+      tmpOpts    = Utils.splitOptions(tmpStr);
+      tmpStr     = tmpOpts[0];
+      tmpOpts[0] = "";
+      setOutputDir((OutputDirGenerator) Utils.forName(OutputDirGenerator.class, tmpStr, tmpOpts));
+    }
+
+    tmpStr = Utils.getOption("training-config", options);
+    if (tmpStr.isEmpty()) {
+      setTrainingConfig(getDefaultTrainingConfig());
+    }
+    else {
+      tmpOpts    = Utils.splitOptions(tmpStr);
+      tmpStr     = tmpOpts[0];
+      tmpOpts[0] = "";
+      setTrainingConfig((TrainingConfigGenerator) Utils.forName(TrainingConfigGenerator.class, tmpStr, tmpOpts));
+    }
+
+    setSupportParallelExecution(Utils.getFlag("support-parallel-execution", options));
+
+    setWarmStart(Utils.getOption("warm-start", options));
+
+    tmpStr = Utils.getOption("inference-precision", options);
+    if (tmpStr.isEmpty())
+      setInferencePrecision(Precision.FLOAT32);
+    else
+      setInferencePrecision(Precision.valueOf(tmpStr));
+
+    tmpStr = Utils.getOption("training-precision", options);
+    if (tmpStr.isEmpty())
+      setTrainingPrecision(Precision.FLOAT32);
+    else
+      setTrainingPrecision(Precision.valueOf(tmpStr));
+
+    setFusedPreprocessing(Utils.getFlag("fused-preprocessing", options));
+
+    setSparseStorage(Utils.getFlag("sparse-storage", options));
+
+    tmpStr = Utils.getOption("ensemble-size", options);
+    if (tmpStr.isEmpty())
+      setEnsembleSize(1);
+    else
+      setEnsembleSize(Integer.parseInt(tmpStr));
+
+    tmpStr = Utils.getOption("ensemble-slots", options);
+    if (tmpStr.isEmpty())
+      setEnsembleSlots(1);
+    else
+      setEnsembleSlots(Integer.parseInt(tmpStr));
+
+    tmpStr = Utils.getOption("num-replicas", options);
+    if (tmpStr.isEmpty())
+      setNumReplicas(1);
+    else
+      setNumReplicas(Integer.parseInt(tmpStr));
+
+    tmpStr = Utils.getOption("averaging-interval", options);
+    if (tmpStr.isEmpty())
+      setAveragingInterval(1);
+    else
+      setAveragingInterval(Integer.parseInt(tmpStr));
+
+    tmpStr = Utils.getOption("num-workers", options);
+    if (tmpStr.isEmpty())
+      setNumWorkers(0);
+    else
+      setNumWorkers(Integer.parseInt(tmpStr));
+
+    tmpStr = Utils.getOption("worker-port", options);
+    if (tmpStr.isEmpty())
+      setWorkerPort(0);
+    else
+      setWorkerPort(Integer.parseInt(tmpStr));
+
+    setRemoteWorkers(Utils.getFlag("remote-workers", options));
+
+    tmpStr = Utils.getOption("worker-timeout", options);
+    if (tmpStr.isEmpty())
+      setWorkerTimeout(TcpAllReduce.DEFAULT_TIMEOUT);
+    else
+      setWorkerTimeout(Integer.parseInt(tmpStr));
+
+    setMissingIndicators(Utils.getFlag("missing-indicators", options));
+
+    tmpStr = Utils.getOption("embedding-threshold", options);
+    if (tmpStr.isEmpty())
+      setEmbeddingThreshold(0);
+    else
+      setEmbeddingThreshold(Integer.parseInt(tmpStr));
+
+    tmpStr = Utils.getOption("embedding-size", options);
+    if (tmpStr.isEmpty())
+      setEmbeddingSize(0);
+    else
+      setEmbeddingSize(Integer.parseInt(tmpStr));
+
+    setShareDatasets(Utils.getFlag("share-datasets", options));
+
+    setBufferedPrediction(Utils.getFlag("buffered-prediction", options));
+
+    super.setOptions(options);
+  }
+
+  /**
+   * Gets the current option settings for the OptionHandler.
+   *
+   * @return the array of current option settings as an array of strings
+   */
+  @Override
+  public String[] getOptions() {
+    List<String> 	result;
+
+    result = new ArrayList<>();
+
+    result.add("-network");
+    result.add(Utils.toCommandLine(getNetwork()));
+
+    result.add("-train-percentage");
+    result.add("" + getTrainPercentage());
+
+    result.add("-split-strategy");
+    result.add(getSplitStrategy().toString());
+
+    result.add("-validation-interval");
+    result.add("" + getValidationInterval());
+
+    result.add("-mini-batch-size");
+    result.add("" + getMiniBatchSize());
+
+    result.add("-num-epochs");
+    result.add("" + getNumEpochs());
+
+    result.add("-id");
+    result.add(Utils.toCommandLine(getID()));
+
+    result.add("-output-dir");
+    result.add(Utils.toCommandLine(getOutputDir()));
+
+    result.add("-training-config");
+    result.add(Utils.toCommandLine(getTrainingConfig()));
+
+    if (getSupportParallelExecution())
+      result.add("-support-parallel-execution");
+
+    if (!getWarmStart().isEmpty()) {
+      result.add("-warm-start");
+      result.add(getWarmStart());
+    }
+
+    result.add("-inference-precision");
+    result.add(getInferencePrecision().toString());
+
+    result.add("-training-precision");
+    result.add(getTrainingPrecision().toString());
+
+    if (getFusedPreprocessing())
+      result.add("-fused-preprocessing");
+
+    if (getSparseStorage())
+      result.add("-sparse-storage");
+
+    result.add("-ensemble-size");
+    result.add("" + getEnsembleSize());
+
+    result.add("-ensemble-slots");
+    result.add("" + getEnsembleSlots());
+
+    result.add("-num-replicas");
+    result.add("" + getNumReplicas());
+
+    result.add("-averaging-interval");
+    result.add("" + getAveragingInterval());
+
+    result.add("-num-workers");
+    result.add("" + getNumWorkers());
+
+    result.add("-worker-port");
+    result.add("" + getWorkerPort());
+
+    if (getRemoteWorkers())
+      result.add("-remote-workers");
+
+    result.add("-worker-timeout");
+    result.add("" + getWorkerTimeout());
+
+    if (getMissingIndicators())
+      result.add("-missing-indicators");
+
+    result.add("-embedding-threshold");
+    result.add("" + getEmbeddingThreshold());
+
+    result.add("-embedding-size");
+    result.add("" + getEmbeddingSize());
+
+    if (getShareDatasets())
+      result.add("-share-datasets");
+
+    if (getBufferedPrediction())
+      result.add("-buffered-prediction");
+
+    result.addAll(Arrays.asList(super.getOptions()));
+
+    return result.toArray(new String[0]);
+  }
+
+  /**
+   * Sets the network generator to use.
+   *
+   * @param value 	the generator
+   */
+  public void setNetwork(NetworkGenerator value) {
+    m_Network = value;
+  }
+
+  /**
+   * Gets the network generator to use.
+   *
+   * @return 		the generator
+   */
+  public NetworkGenerator getNetwork() {
+    return m_Network;
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return		tip text for this property suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String networkTipText() {
+    return "The generator to create the network structure with.";
+  }
+
+  /**
+   * Sets the percentage to use for the internal training set.
+   *
+   * @param value 	the percentage
+   */
+  public void setTrainPercentage(int value) {
+    if ((value > 0) && (value <= 100))
+      m_TrainPercentage = value;
+  }
+
+  /**
+   * Gets the percentage to use for the internal training set.
+   *
+   * @return 		the percentage
+   */
+  public int getTrainPercentage() {
+    return m_TrainPercentage;
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return		tip text for this property suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String trainPercentageTipText() {
+    return "The percentage to use for splitting the data into internal train/validation sets, 100 to train on "
+	     + "all the data without validation.";
+  }
+
+  /**
+   * Sets the number of epochs after which to evaluate the validation set.
+   *
+   * @param value 	the interval
+   */
+  public void setValidationInterval(int value) {
+    if (value >= 1)
+      m_ValidationInterval = value;
+  }
+
+  /**
+   * Gets the number of epochs after which to evaluate the validation set.
+   *
+   * @return 		the interval
+   */
+  public int getValidationInterval() {
+    return m_ValidationInterval;
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return		tip text for this property suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String validationIntervalTipText() {
+    return "The number of epochs after which to evaluate the validation set (the last epoch always gets evaluated).";
+  }
+
+  /**
+   * Sets how to split the data into internal train/validation sets.
+   *
+   * @param value 	the strategy
+   */
+  public void setSplitStrategy(SplitStrategy value) {
+    m_SplitStrategy = value;
+  }
+
+  /**
+   * Gets how to split the data into internal train/validation sets.
+   *
+   * @return 		the strategy
+   */
+  public SplitStrategy getSplitStrategy() {
+    return m_SplitStrategy;
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return		tip text for this property suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String splitStrategyTipText() {
+    return "How to split the data into internal train/validation sets: random rows, ordered (the last rows get used "
+	     + "for validation, e.g., for time series) or stratified (by class label or quantiles of a numeric class).";
+  }
+
+  /**
+   * Sets the batch size to use.
+   *
+   * @param value 	the batch size
+   */
+  public void setMiniBatchSize(int value) {
+    if (value > 0)
+      m_MiniBatchSize = value;
+  }
+
+  /**
+   * Gets the batch size to use.
+   *
+   * @return 		the batch size
+   */
+  public int getMiniBatchSize() {
+    return m_MiniBatchSize;
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return		tip text for this property suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String miniBatchSizeTipText() {
+    return "The batch size to use.";
+  }
+
+  /**
+   * Sets the number of epochs to train for.
+   *
+   * @param value 	the epochs
+   */
+  public void setNumEpochs(int value) {
+    if (value > 0)
+      m_NumEpochs = value;
+  }
+
+  /**
+   * Gets the number of epochs to train for.
+   *
+   * @return 		the epochs
+   */
+  public int getNumEpochs() {
+    return m_NumEpochs;
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return		tip text for this property suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String numEpochsTipText() {
+    return "The number of epochs to train for.";
+  }
+
+  /**
+   * Sets the ID/prefix generator for saving the model.
+   *
+   * @param value 	the ID/prefix
+   */
+  public void setID(IDGenerator value) {
+    m_ID = value;
+  }
+
+  /**
+   * Gets the ID/prefix generator for saving the model.
+   *
+   * @return 		the ID/prefix
+   */
+  public IDGenerator getID() {
+    return m_ID;
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return		tip text for this property suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String IDTipText() {
+    return "The ID/prefix generator to use for saving the model.";
+  }
+
+  /**
+   * Sets the output directory generator to use.
+   *
+   * @param value 	the generator
+   */
+  public void setOutputDir(OutputDirGenerator value) {
+    m_OutputDir = value;
+  }
+
+  /**
+   * Gets the output directory generator to use.
+   *
+   * @return 		the generator
+   */
+  public OutputDirGenerator getOutputDir() {
+    return m_OutputDir;
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return		tip text for this property suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String outputDirTipText() {
+    return "The generator to use for generating the output directory.";
+  }
+
+  /**
+   * Sets the training config generator to use.
+   *
+   * @param value 	the generator
+   */
+  public void setTrainingConfig(TrainingConfigGenerator value) {
+    m_TrainingConfig = value;
+  }
+
+  /**
+   * Gets the training config generator to use.
+   *
+   * @return 		the generator
+   */
+  public TrainingConfigGenerator getTrainingConfig() {
+    return m_TrainingConfig;
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return		tip text for this property suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String trainingConfigTipText() {
+    return "The generator to use for generating the configuration to train the network.";
+  }
+
+  /**
+   * Sets whether to enable support for parallel execution.
+   * If enabled, a unique ID gets appended to model IDs, requiring the user to manually delete unwanted .params files
+   *
+   * @param value 	true if to enable
+   */
+  public void setSupportParallelExecution(boolean value) {
+    m_SupportParallelExecution = value;
+  }
+
+  /**
+   * Gets the output directory generator to use.
+   * If enabled, a unique ID gets appended to model IDs, requiring the user to manually delete unwanted .params files
+   *
+   * @return 		true if enabled
+   */
+  public boolean getSupportParallelExecution() {
+    return m_SupportParallelExecution;
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return		tip text for this property suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String supportParallelExecutionTipText() {
+    return "If enabled, a unique ID gets appended to model IDs, requiring the user to manually delete unwanted .params files.";
+  }
+
+  /**
+   * Sets the previously saved model to initialize the network parameters
+   * with, in the format 'dir|id'. Use an empty string to disable.
+   *
+   * @param value 	the model, empty to disable
+   */
+  public void setWarmStart(String value) {
+    m_WarmStart = value;
+  }
+
+  /**
+   * Gets the previously saved model to initialize the network parameters
+   * with, in the format 'dir|id'. An empty string means disabled.
+   *
+   * @return 		the model, empty if disabled
+   */
+  public String getWarmStart() {
+    return m_WarmStart;
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return		tip text for this property suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String warmStartTipText() {
+    return "The previously saved model (format: 'dir|id') to initialize the network parameters with instead of "
+	     + "random values; the saved dataset structure must be compatible; empty to disable.";
+  }
+
+  /**
+   * Sets the precision to convert the network parameters to after training.
+   *
+   * @param value 	the precision
+   */
+  public void setInferencePrecision(Precision value) {
+    m_InferencePrecision = value;
+  }
+
+  /**
+   * Gets the precision to convert the network parameters to after training.
+   *
+   * @return 		the precision
+   */
+  public Precision getInferencePrecision() {
+    return m_InferencePrecision;
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return		tip text for this property suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String inferencePrecisionTipText() {
+    return "The precision to convert the network parameters to after training, for smaller and faster models during "
+	     + "inference; the converted model is the one that gets saved.";
+  }
+
+  /**
+   * Sets the precision for the computations during training. FLOAT16 is
+   * not supported, as it would require loss scaling.
+   *
+   * @param value 	the precision
+   */
+  public void setTrainingPrecision(Precision value) {
+    if (value != Precision.FLOAT16)
+      m_TrainingPrecision = value;
+  }
+
+  /**
+   * Gets the precision for the computations during training.
+   *
+   * @return 		the precision
+   */
+  public Precision getTrainingPrecision() {
+    return m_TrainingPrecision;
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return		tip text for this property suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String trainingPrecisionTipText() {
+    return "The precision for the forward/backward passes of the network during training, with the parameters "
+	     + "remaining in FLOAT32 (mixed precision); BFLOAT16 is faster on CPUs with native support; FLOAT16 is "
+	     + "not supported.";
+  }
+
+  /**
+   * Sets whether to perform the preprocessing of the features within the network.
+   *
+   * @param value 	true if to fuse
+   */
+  public void setFusedPreprocessing(boolean value) {
+    m_FusedPreprocessing = value;
+  }
+
+  /**
+   * Gets whether to perform the preprocessing of the features within the network.
+   *
+   * @return 		true if fused
+   */
+  public boolean getFusedPreprocessing() {
+    return m_FusedPreprocessing;
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return		tip text for this property suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String fusedPreprocessingTipText() {
+    return "If enabled, the normalization of numeric features and the one-hot encoding of nominal ones is performed "
+	     + "within the network (using statistics computed once on the training data), rather than per cell in Java.";
+  }
+
+  /**
+   * Sets whether to store the features in compressed sparse row format.
+   *
+   * @param value 	true if sparse
+   */
+  public void setSparseStorage(boolean value) {
+    m_SparseStorage = value;
+  }
+
+  /**
+   * Gets whether to store the features in compressed sparse row format.
+   *
+   * @return 		true if sparse
+   */
+  public boolean getSparseStorage() {
+    return m_SparseStorage;
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return		tip text for this property suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String sparseStorageTipText() {
+    return "If enabled, the features are stored in compressed sparse row format, only visiting the non-zero values "
+	     + "of the instances, i.e., memory is proportional to the non-zero values; requires fused preprocessing.";
+  }
+
+  /**
+   * Sets the number of networks in the ensemble.
+   *
+   * @param value 	the size, 1 for no ensemble
+   */
+  public void setEnsembleSize(int value) {
+    if (value >= 1)
+      m_EnsembleSize = value;
+  }
+
+  /**
+   * Gets the number of networks in the ensemble.
+   *
+   * @return 		the size, 1 for no ensemble
+   */
+  public int getEnsembleSize() {
+    return m_EnsembleSize;
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return		tip text for this property suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String ensembleSizeTipText() {
+    return "The number of networks in the ensemble, each trained on a bootstrap sample of the featurized training "
+	     + "data; the outputs of the members get averaged within a single network, 1 for no ensemble.";
+  }
+
+  /**
+   * Sets the number of ensemble members to train in parallel.
+   *
+   * @param value 	the number of slots, 0 for number of cores
+   */
+  public void setEnsembleSlots(int value) {
+    if (value >= 0)
+      m_EnsembleSlots = value;
+  }
+
+  /**
+   * Gets the number of ensemble members to train in parallel.
+   *
+   * @return 		the number of slots, 0 for number of cores
+   */
+  public int getEnsembleSlots() {
+    return m_EnsembleSlots;
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return		tip text for this property suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String ensembleSlotsTipText() {
+    return "The number of ensemble members to train in parallel (sharing the available cores), 0 for number of cores.";
+  }
+
+  /**
+   * Sets the number of replicas for training with parameter averaging.
+   *
+   * @param value 	the number of replicas, 1 to disable
+   */
+  public void setNumReplicas(int value) {
+    if (value >= 1)
+      m_NumReplicas = value;
+  }
+
+  /**
+   * Gets the number of replicas for training with parameter averaging.
+   *
+   * @return 		the number of replicas, 1 if disabled
+   */
+  public int getNumReplicas() {
+    return m_NumReplicas;
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return		tip text for this property suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String numReplicasTipText() {
+    return "The number of replicas of the network to train in parallel threads on disjoint shards of the training "
+	     + "data, with their parameters getting averaged periodically (local SGD), 1 to disable.";
+  }
+
+  /**
+   * Sets the number of epochs after which to average the parameters of the replicas.
+   *
+   * @param value 	the number of epochs
+   */
+  public void setAveragingInterval(int value) {
+    if (value >= 1)
+      m_AveragingInterval = value;
+  }
+
+  /**
+   * Gets the number of epochs after which to average the parameters of the replicas.
+   *
+   * @return 		the number of epochs
+   */
+  public int getAveragingInterval() {
+    return m_AveragingInterval;
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return		tip text for this property suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String averagingIntervalTipText() {
+    return "The number of epochs after which to average the parameters of the replicas.";
+  }
+
+  /**
+   * Sets the number of additional worker processes for data-parallel training.
+   *
+   * @param value 	the number of workers, 0 for single process
+   */
+  public void setNumWorkers(int value) {
+    if (value >= 0)
+      m_NumWorkers = value;
+  }
+
+  /**
+   * Gets the number of additional worker processes for data-parallel training.
+   *
+   * @return 		the number of workers, 0 for single process
+   */
+  public int getNumWorkers() {
+    return m_NumWorkers;
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return		tip text for this property suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String numWorkersTipText() {
+    return "The number of additional worker processes for data-parallel training: each process trains on a shard of "
+	     + "the training data and the gradients get averaged after each mini-batch; 0 for single process; requires "
+	     + "fused preprocessing.";
+  }
+
+  /**
+   * Sets the port that the workers connect to.
+   *
+   * @param value 	the port, 0 for any free port
+   */
+  public void setWorkerPort(int value) {
+    if ((value >= 0) && (value <= 65535))
+      m_WorkerPort = value;
+  }
+
+  /**
+   * Gets the port that the workers connect to.
+   *
+   * @return 		the port, 0 for any free port
+   */
+  public int getWorkerPort() {
+    return m_WorkerPort;
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return		tip text for this property suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String workerPortTipText() {
+    return "The port that the workers connect to, 0 for any free port.";
+  }
+
+  /**
+   * Sets whether the workers get started manually rather than spawned locally.
+   *
+   * @param value 	true if started manually
+   */
+  public void setRemoteWorkers(boolean value) {
+    m_RemoteWorkers = value;
+  }
+
+  /**
+   * Gets whether the workers get started manually rather than spawned locally.
+   *
+   * @return 		true if started manually
+   */
+  public boolean getRemoteWorkers() {
+    return m_RemoteWorkers;
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return		tip text for this property suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String remoteWorkersTipText() {
+    return "If enabled, the workers have to be started manually (e.g., on other machines) using "
+	     + DistributedWorker.class.getName() + ", connecting to the port of this process; otherwise they get "
+	     + "spawned as local processes.";
+  }
+
+  /**
+   * Sets the number of seconds to wait for the workers to connect or respond.
+   *
+   * @param value 	the seconds
+   */
+  public void setWorkerTimeout(int value) {
+    if (value >= 1)
+      m_WorkerTimeout = value;
+  }
+
+  /**
+   * Gets the number of seconds to wait for the workers to connect or respond.
+   *
+   * @return 		the seconds
+   */
+  public int getWorkerTimeout() {
+    return m_WorkerTimeout;
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return		tip text for this property suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String workerTimeoutTipText() {
+    return "The number of seconds to wait for the workers to connect or for a response during training; "
+	     + "training fails if a spawned worker terminates prematurely.";
+  }
+
+  /**
+   * Sets whether to add indicator columns for features with missing values.
+   *
+   * @param value 	true if to add
+   */
+  public void setMissingIndicators(boolean value) {
+    m_MissingIndicators = value;
+  }
+
+  /**
+   * Gets whether to add indicator columns for features with missing values.
+   *
+   * @return 		true if added
+   */
+  public boolean getMissingIndicators() {
+    return m_MissingIndicators;
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return		tip text for this property suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String missingIndicatorsTipText() {
+    return "If enabled, indicator columns get added to the network input for features that had missing values in "
+	     + "the training data (missing values get imputed in any case); requires fused preprocessing.";
+  }
+
+  /**
+   * Sets the number of labels above which nominal features get embedded.
+   *
+   * @param value 	the threshold, 0 to disable
+   */
+  public void setEmbeddingThreshold(int value) {
+    if (value >= 0)
+      m_EmbeddingThreshold = value;
+  }
+
+  /**
+   * Gets the number of labels above which nominal features get embedded.
+   *
+   * @return 		the threshold, 0 if disabled
+   */
+  public int getEmbeddingThreshold() {
+    return m_EmbeddingThreshold;
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return		tip text for this property suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String embeddingThresholdTipText() {
+    return "The number of labels above which nominal features get mapped onto a learned embedding (fed as label "
+	     + "index) instead of getting one-hot encoded, 0 to disable; requires fused preprocessing.";
+  }
+
+  /**
+   * Sets the size of the learned embeddings.
+   *
+   * @param value 	the size, 0 for automatic
+   */
+  public void setEmbeddingSize(int value) {
+    if (value >= 0)
+      m_EmbeddingSize = value;
+  }
+
+  /**
+   * Gets the size of the learned embeddings.
+   *
+   * @return 		the size, 0 for automatic
+   */
+  public int getEmbeddingSize() {
+    return m_EmbeddingSize;
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return		tip text for this property suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String embeddingSizeTipText() {
+    return "The size of the learned embeddings, 0 for half the number of labels (capped at 50).";
+  }
+
+  /**
+   * Sets whether to share the prepared training data with concurrent builds.
+   *
+   * @param value 	true if to share
+   */
+  public void setShareDatasets(boolean value) {
+    m_ShareDatasets = value;
+  }
+
+  /**
+   * Gets whether to share the prepared training data with concurrent builds.
+   *
+   * @return 		true if shared
+   */
+  public boolean getShareDatasets() {
+    return m_ShareDatasets;
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return		tip text for this property suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String shareDatasetsTipText() {
+    return "If enabled, the prepared (featurized) training data gets shared with other classifiers in this process "
+	     + "that train on the same data using the same dataset structure (e.g., parallel runs in the Experimenter), "
+	     + "rather than each one featurizing its own copy.";
+  }
+
+  /**
+   * Sets whether to use pre-allocated buffers for batch predictions.
+   *
+   * @param value 	true if to use buffers
+   */
+  public void setBufferedPrediction(boolean value) {
+    m_BufferedPrediction = value;
+  }
+
+  /**
+   * Gets whether to use pre-allocated buffers for batch predictions.
+   *
+   * @return 		true if using buffers
+   */
+  public boolean getBufferedPrediction() {
+    return m_BufferedPrediction;
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return		tip text for this property suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String bufferedPredictionTipText() {
+    return "If enabled, batch predictions use input tensors of the batch size that get allocated once and "
+	     + "overwritten for every batch (padding the last batch), with a pool of predictors for concurrent "
+	     + "predictions.";
+  }
+
+  /**
+   * Returns the Capabilities of this classifier. Only enables the attribute
+   * capabilities, derived classes need to enable the class ones.
+   * Date attributes get treated as numeric ones. Nominal and string
+   * attributes (the latter treated as nominal ones) require fused
+   * preprocessing, as labels not seen during training are handled there.
+   * Missing values get imputed, instances with missing class get skipped.
+   *
+   * @return the capabilities of this object
+   * @see Capabilities
+   */
+  @Override
+  public Capabilities getCapabilities() {
+    Capabilities result = super.getCapabilities();
+    result.disableAll();
+    result.enable(Capability.NUMERIC_ATTRIBUTES);
+    result.enable(Capability.DATE_ATTRIBUTES);
+    result.enable(Capability.MISSING_VALUES);
+    result.enable(Capability.MISSING_CLASS_VALUES);
+    if (m_FusedPreprocessing) {
+      result.enable(Capability.NOMINAL_ATTRIBUTES);
+      result.enable(Capability.STRING_ATTRIBUTES);
+    }
+    return result;
+  }
+
+  /**
+   * Hook method for adding further labels to the dataset, besides the class
+   * attribute. Gets called before the features get added.
+   * <br>
+   * Default implementation does nothing.
+   *
+   * @param builder	the builder to configure
+   */
+  protected void configureLabels(InstancesDataset.InstancesBuilder<?> builder) {
+  }
+
+  /**
+   * Removes the instances with missing class values. Only creates a copy
+   * of the data if there are any. Derived classes with further targets
+   * remove instances with missing values in those as well.
+   *
+   * @param data	the data to process
+   * @return		the data without missing target values
+   */
+  protected Instances removeMissingTargets(Instances data) {
+    int		i;
+
+    for (i = 0; i < data.numInstances(); i++) {
+      if (data.instance(i).classIsMissing()) {
+	data = new Instances(data);
+	data.deleteWithMissingClass();
+	break;
+      }
+    }
+
+    return data;
+  }
+
+  /**
+   * Creates the builder for the DJL dataset of the data, configured
+   * according to the options of the classifier.
+   *
+   * @param data	the data to wrap
+   * @return		the configured builder
+   */
+  protected InstancesDataset.InstancesBuilder<?> newBuilder(Instances data) {
+    InstancesDataset.InstancesBuilder<?>	result;
+
+    result = InstancesDataset.builder()
+		.setSampling(m_MiniBatchSize, true)
+		.dateColumnsAsNumeric();
+    if (m_FusedPreprocessing) {
+      result.fusedPreprocessing();
+      result.stringColumnsAsNominal();
+      if (m_MissingIndicators)
+	result.missingIndicators();
+      if (m_EmbeddingThreshold > 0) {
+	result.embeddingThreshold(m_EmbeddingThreshold);
+	result.embeddingSize(m_EmbeddingSize);
+      }
+    }
+    result.data(data);
+    if (m_SparseStorage)
+      result.sparseStorage();
+    configureLabels(result);
+    result.addAllFeatures();
+
+    return result;
+  }
+
+  /**
+   * Creates the DJL dataset for the data and prepares it, i.e., the data
+   * gets featurized. When sharing datasets, an already prepared dataset
+   * with the same data and structure gets reused (see
+   * {@link InstancesDatasetCache}), which has to get released again via
+   * {@link InstancesDatasetCache#release(InstancesDataset)} once training
+   * has finished.
+   *
+   * @param data	the data to wrap
+   * @return		the prepared dataset
+   * @throws Exception	if preparing the dataset fails
+   */
+  protected InstancesDataset newDataset(Instances data) throws Exception {
+    InstancesDataset			result;
+    InstancesDataset.InstancesBuilder<?>	builder;
+
+    builder = newBuilder(data);
+    if (m_ShareDatasets) {
+      result = InstancesDatasetCache.acquire(builder, m_MiniBatchSize);
+    }
+    else {
+      result = builder.build();
+      result.prepare();
+    }
+
+    return result;
+  }
+
+  /**
+   * Generates a single network for the dataset. With fused preprocessing, the
+   * network gets preceded by the preprocessing block of the dataset. With a
+   * lower training precision, the network (but not the preprocessing) gets
+   * wrapped in a {@link MixedPrecisionBlock}.
+   *
+   * @param dataset	the dataset to generate the network for
+   * @return		the network
+   */
+  protected Block generateMember(InstancesDataset dataset) {
+    Block	result;
+
+    result = m_Network.generate(dataset);
+    if (m_TrainingPrecision != Precision.FLOAT32)
+      result = new MixedPrecisionBlock(result, m_TrainingPrecision.getDataType());
+    if (dataset.isFusedPreprocessing())
+      result = new SequentialBlock()
+		 .add(dataset.newPreprocessingBlock())
+		 .add(result);
+
+    return result;
+  }
+
+  /**
+   * Generates the network for the dataset: either a single network or,
+   * with an ensemble, the members in parallel with their outputs averaged.
+   *
+   * @param dataset	the dataset to generate the network for
+   * @return		the network
+   * @see #generateMember(InstancesDataset)
+   */
+  protected Block generateNetwork(InstancesDataset dataset) {
+    List<Block>	members;
+    int		i;
+
+    if (m_EnsembleSize == 1)
+      return generateMember(dataset);
+
+    members = new ArrayList<>();
+    for (i = 0; i < m_EnsembleSize; i++)
+      members.add(generateMember(dataset));
+
+    return new ParallelBlock(
+      outputs -> {
+	NDList stacked = new NDList();
+	for (NDList output: outputs)
+	  stacked.add(output.singletonOrThrow());
+	return new NDList(NDArrays.stack(stacked).mean(new int[]{0}));
+      },
+      members);
+  }
+
+  /**
+   * Trains the model on the training data, using a freshly generated
+   * training config and the configured number of epochs. An ensemble
+   * gets trained via {@link #trainEnsemble(Model, InstancesDataset, RandomAccessDataset, Dataset)}.
+   *
+   * @param model		the model to train
+   * @param dataset		the full dataset
+   * @param trainDataset	the training data
+   * @param validateDataset	the validation data
+   * @throws Exception		if training fails
+   */
+  protected void train(Model model, InstancesDataset dataset, RandomAccessDataset trainDataset, Dataset validateDataset) throws Exception {
+    if (m_EnsembleSize > 1)
+      trainEnsemble(model, dataset, trainDataset, validateDataset);
+    else
+      train(model, dataset, m_TrainingConfig.generate(), m_NumEpochs, trainDataset, validateDataset);
+  }
+
+  /**
+   * Trains the members of the ensemble on bootstrap samples (index views)
+   * of the training data, in parallel according to {@link #getEnsembleSlots()}.
+   * Each member gets trained in its own model and its parameters get
+   * copied into the corresponding member of the ensemble network afterwards.
+   *
+   * @param model		the model with the ensemble network
+   * @param dataset		the full dataset
+   * @param trainDataset	the training data
+   * @param validateDataset	the validation data, can be null
+   * @throws Exception		if training fails
+   */
+  protected void trainEnsemble(Model model, InstancesDataset dataset, RandomAccessDataset trainDataset, Dataset validateDataset) throws Exception {
+    final List<Block>	members;
+    int			numThreads;
+    int			numSlots;
+    ExecutorService	executor;
+    List<Future<?>>	jobs;
+    int			i;
+
+    if (!model.getBlock().isInitialized())
+      model.getBlock().initialize(model.getNDManager(), DataType.FLOAT32, new Shape(1, dataset.getInputSize()));
+    members = new ArrayList<>(model.getBlock().getChildren().values());
+
+    numSlots = m_EnsembleSlots;
+    if (numSlots == 0)
+      numSlots = Runtime.getRuntime().availableProcessors();
+    numSlots = Math.max(1, Math.min(numSlots, members.size()));
+
+    if (getDebug())
+      System.out.println("Ensemble members: " + members.size() + ", parallel members: " + numSlots);
+
+    if (numSlots == 1) {
+      for (i = 0; i < members.size(); i++)
+	trainMember(model, dataset, trainDataset, validateDataset, members.get(i), i);
+      return;
+    }
+
+    numThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / numSlots);
+    DJLUtils.limitPyTorchNumThreads(numThreads);
+    executor   = Executors.newFixedThreadPool(numSlots);
+    try {
+      jobs = new ArrayList<>();
+      for (i = 0; i < members.size(); i++) {
+	final int index = i;
+	jobs.add(executor.submit(() -> {
+	  trainMember(model, dataset, trainDataset, validateDataset, members.get(index), index);
+	  return null;
+	}));
+      }
+      for (Future<?> job: jobs)
+	job.get();
+    }
+    finally {
+      executor.shutdownNow();
+      DJLUtils.releasePyTorchNumThreads();
+    }
+  }
+
+  /**
+   * Trains a single member of the ensemble on a bootstrap sample of the
+   * training data, starting from the member's current parameters.
+   *
+   * @param model		the model with the ensemble network
+   * @param dataset		the full dataset
+   * @param trainDataset	the training data
+   * @param validateDataset	the validation data, can be null
+   * @param member		the member in the ensemble network to train
+   * @param index		the index of the member
+   * @throws Exception		if training fails
+   */
+  protected void trainMember(Model model, InstancesDataset dataset, RandomAccessDataset trainDataset, Dataset validateDataset, Block member, int index) throws Exception {
+    int[]		bootstrap;
+    SplittableRandom	random;
+    int			i;
+
+    random    = new SplittableRandom(m_Seed + index);
+    bootstrap = new int[Math.toIntExact(trainDataset.size())];
+    for (i = 0; i < bootstrap.length; i++)
+      bootstrap[i] = random.nextInt(bootstrap.length);
+
+    try (Model memberModel = Model.newInstance(model.getName() + "-member-" + index)) {
+      memberModel.setBlock(generateMember(dataset));
+      memberModel.getBlock().initialize(memberModel.getNDManager(), DataType.FLOAT32, new Shape(1, dataset.getInputSize()));
+      DJLUtils.copyParameters(member, memberModel.getBlock());
+      train(memberModel, dataset, m_TrainingConfig.generate(), m_NumEpochs, IndexedDataset.shuffled(trainDataset, bootstrap, m_MiniBatchSize, m_Seed + index), validateDataset);
+      DJLUtils.copyParameters(memberModel.getBlock(), member);
+    }
+  }
+
+  /**
+   * Trains the model on the training data. Only initializes the parameters
+   * of the network if they haven't been initialized yet, i.e., training
+   * continues from the current parameters otherwise.
+   *
+   * @param model		the model to train
+   * @param dataset		the full dataset
+   * @param trainingConfig	the training config to use
+   * @param numEpochs		the number of epochs to train for
+   * @param trainDataset	the training data
+   * @param validateDataset	the validation data, can be null
+   * @throws Exception		if training fails
+   */
+  protected void train(Model model, InstancesDataset dataset, TrainingConfig trainingConfig, int numEpochs, Dataset trainDataset, Dataset validateDataset) throws Exception {
+    try (Trainer trainer = model.newTrainer(trainingConfig)) {
+      if (!model.getBlock().isInitialized())
+	trainer.initialize(new Shape(1, dataset.getInputSize()));
+      fit(trainer, numEpochs, trainDataset, validateDataset);
+    }
+  }
+
+  /**
+   * Trains for the specified number of epochs like
+   * {@link EasyTrain#fit(Trainer, int, Dataset, Dataset)}, but only evaluates
+   * the validation data every {@link #getValidationInterval()} epochs and
+   * after the last epoch.
+   *
+   * @param trainer		the trainer to use
+   * @param numEpochs		the number of epochs
+   * @param trainDataset	the training data
+   * @param validateDataset	the validation data, can be null
+   * @throws Exception		if training fails
+   */
+  protected void fit(Trainer trainer, int numEpochs, Dataset trainDataset, Dataset validateDataset) throws Exception {
+    int		epoch;
+
+    for (epoch = 0; epoch < numEpochs; epoch++) {
+      for (Batch batch: trainer.iterateDataset(trainDataset)) {
+	try {
+	  EasyTrain.trainBatch(trainer, batch);
+	  trainer.step();
+	}
+	finally {
+	  batch.close();
+	}
+      }
+      if ((validateDataset != null) && (((epoch + 1) % m_ValidationInterval == 0) || (epoch == numEpochs - 1)))
+	EasyTrain.evaluateDataset(trainer, validateDataset);
+      trainer.notifyListeners(listener -> listener.onEpoch(trainer));
+    }
+  }
+
+  /**
+   * Returns the values of all parameters of the block as a single array.
+   *
+   * @param block	the block to get the parameters from
+   * @return		the values
+   */
+  protected float[] getParameterValues(Block block) {
+    List<float[]>	values;
+    float[]		result;
+    int			size;
+    int			offset;
+
+    values = new ArrayList<>();
+    size   = 0;
+    for (Parameter param: block.getParameters().values()) {
+      values.add(param.getArray().toFloatArray());
+      size += values.get(values.size() - 1).length;
+    }
+
+    result = new float[size];
+    offset = 0;
+    for (float[] value: values) {
+      System.arraycopy(value, 0, result, offset, value.length);
+      offset += value.length;
+    }
+
+    return result;
+  }
+
+  /**
+   * Sets the values of all parameters of the block from a single array.
+   *
+   * @param block	the block to set the parameters for
+   * @param values	the values
+   */
+  protected void setParameterValues(Block block, float[] values) {
+    NDArray	array;
+    int		offset;
+    int		size;
+
+    offset = 0;
+    for (Parameter param: block.getParameters().values()) {
+      array = param.getArray();
+      size  = Math.toIntExact(array.size());
+      array.set(Arrays.copyOfRange(values, offset, offset + size));
+      offset += size;
+    }
+  }
+
+  /**
+   * Averages the gradients of the parameters across all processes.
+   *
+   * @param block	the block with the gradients
+   * @param comm	the communication to use
+   * @throws Exception	if communication fails
+   */
+  protected void allReduceGradients(Block block, TcpAllReduce comm) throws Exception {
+    List<NDArray>	gradients;
+    float[]		values;
+    float[]		gradient;
+    int			size;
+    int			offset;
+
+    gradients = new ArrayList<>();
+    size      = 0;
+    for (Parameter param: block.getParameters().values()) {
+      if (param.requiresGradient()) {
+	gradients.add(param.getArray().getGradient());
+	size += Math.toIntExact(gradients.get(gradients.size() - 1).size());
+      }
+    }
+
+    values = new float[size];
+    offset = 0;
+    for (NDArray grad: gradients) {
+      gradient = grad.toFloatArray();
+      System.arraycopy(gradient, 0, values, offset, gradient.length);
+      offset += gradient.length;
+    }
+
+    comm.allReduce(values);
+
+    offset = 0;
+    for (NDArray grad: gradients) {
+      size = Math.toIntExact(grad.size());
+      grad.set(Arrays.copyOfRange(values, offset, offset + size));
+      offset += size;
+    }
+  }
+
+  /**
+   * Trains the model on the shard of the training data in lock-step with
+   * the other processes: the parameters get synchronized with the
+   * coordinator first and the gradients get averaged after each mini-batch.
+   * All processes perform the same number of steps per epoch. The validation
+   * data (coordinator only) gets evaluated every {@link #getValidationInterval()}
+   * epochs and after the last epoch.
+   *
+   * @param model		the model to train
+   * @param dataset		the dataset the shard belongs to
+   * @param shard		the shard of the training data
+   * @param validateDataset	the validation data, can be null
+   * @param numEpochs		the number of epochs
+   * @param numSteps		the number of mini-batches per epoch
+   * @param comm		the communication to use
+   * @throws Exception		if training fails
+   */
+  protected void trainDataParallel(Model model, InstancesDataset dataset, Dataset shard, Dataset validateDataset, int numEpochs, int numSteps, TcpAllReduce comm) throws Exception {
+    float[]	values;
+    int		epoch;
+    int		step;
+
+    try (Trainer trainer = model.newTrainer(m_TrainingConfig.generate())) {
+      if (!model.getBlock().isInitialized())
+	trainer.initialize(new Shape(1, dataset.getInputSize()));
+
+      values = getParameterValues(model.getBlock());
+      comm.broadcast(values);
+      if (!comm.isCoordinator())
+	setParameterValues(model.getBlock(), values);
+
+      for (epoch = 0; epoch < numEpochs; epoch++) {
+	step = 0;
+	for (Batch batch: trainer.iterateDataset(shard)) {
+	  try {
+	    if (step == numSteps)
+	      break;
+	    EasyTrain.trainBatch(trainer, batch);
+	    allReduceGradients(model.getBlock(), comm);
+	    trainer.step();
+	    step++;
+	  }
+	  finally {
+	    batch.close();
+	  }
+	}
+	if ((validateDataset != null) && (((epoch + 1) % m_ValidationInterval == 0) || (epoch == numEpochs - 1)))
+	  EasyTrain.evaluateDataset(trainer, validateDataset);
+	trainer.notifyListeners(listener -> listener.onEpoch(trainer));
+      }
+    }
+  }
+
+  /**
+   * Trains replicas of the network in parallel threads on disjoint shards
+   * (index views) of the training data. Every {@link #getAveragingInterval()}
+   * epochs, the parameters of the replicas get averaged and the replicas
+   * continue from the averaged parameters (keeping their optimizer state).
+   * The final averaged parameters get stored in the model.
+   *
+   * @param model		the model to train
+   * @param dataset		the full dataset
+   * @param trainDataset	the training data
+   * @param validateDataset	the validation data, can be null
+   * @throws Exception		if training fails
+   */
+  protected void trainParameterAveraging(Model model, InstancesDataset dataset, RandomAccessDataset trainDataset, RandomAccessDataset validateDataset) throws Exception {
+    final List<Model>			replicas;
+    final List<Trainer>			trainers;
+    final List<RandomAccessDataset>	shards;
+    int					numThreads;
+    int[]				rows;
+    int[]				shard;
+    ExecutorService			executor;
+    List<Future<?>>			jobs;
+    float[]				values;
+    float[]				average;
+    int					epoch;
+    int					i;
+    int				n;
+
+    if (m_EnsembleSize > 1)
+      throw new IllegalStateException("Parameter averaging does not support ensembles!");
+
+    if (!model.getBlock().isInitialized())
+      model.getBlock().initialize(model.getNDManager(), DataType.FLOAT32, new Shape(1, dataset.getInputSize()));
+
+    rows   = PermutationSampler.permutation(Math.toIntExact(trainDataset.size()), m_Seed);
+    shards = new ArrayList<>();
+    for (i = 0; i < m_NumReplicas; i++) {
+      shard = new int[(rows.length - i + m_NumReplicas - 1) / m_NumReplicas];
+      for (n = 0; n < shard.length; n++)
+	shard[n] = rows[i + n * m_NumReplicas];
+      shards.add(IndexedDataset.shuffled(trainDataset, shard, m_MiniBatchSize, m_Seed + i));
+    }
+
+    numThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / m_NumReplicas);
+    replicas   = new ArrayList<>();
+    trainers   = new ArrayList<>();
+    DJLUtils.limitPyTorchNumThreads(numThreads);
+    executor   = Executors.newFixedThreadPool(m_NumReplicas);
+    try {
+      for (i = 0; i < m_NumReplicas; i++) {
+	replicas.add(Model.newInstance(model.getName() + "-replica-" + i));
+	replicas.get(i).setBlock(generateNetwork(dataset));
+	replicas.get(i).getBlock().initialize(replicas.get(i).getNDManager(), DataType.FLOAT32, new Shape(1, dataset.getInputSize()));
+	DJLUtils.copyParameters(model.getBlock(), replicas.get(i).getBlock());
+	trainers.add(replicas.get(i).newTrainer(m_TrainingConfig.generate()));
+      }
+
+      for (epoch = 0; epoch < m_NumEpochs; epoch += m_AveragingInterval) {
+	final int numEpochs = Math.min(m_AveragingInterval, m_NumEpochs - epoch);
+	jobs = new ArrayList<>();
+	for (i = 0; i < m_NumReplicas; i++) {
+	  final int index = i;
+	  jobs.add(executor.submit(() -> {
+	    fit(trainers.get(index), numEpochs, shards.get(index), null);
+	    return null;
+	  }));
+	}
+	for (Future<?> job: jobs)
+	  job.get();
+
+	average = null;
+	for (Model replica: replicas) {
+	  values = getParameterValues(replica.getBlock());
+	  if (average == null) {
+	    average = values;
+	  }
+	  else {
+	    for (n = 0; n < values.length; n++)
+	      average[n] += values[n];
+	  }
+	}
+	for (n = 0; n < average.length; n++)
+	  average[n] /= m_NumReplicas;
+	for (Model replica: replicas)
+	  setParameterValues(replica.getBlock(), average);
+	setParameterValues(model.getBlock(), average);
+
+	if (getDebug() && (validateDataset != null))
+	  System.out.println("Epoch " + (epoch + numEpochs) + "/" + m_NumEpochs + ", averaged " + getErrorName() + ": " + computeError(model, validateDataset));
+      }
+    }
+    finally {
+      executor.shutdownNow();
+      DJLUtils.releasePyTorchNumThreads();
+      for (Trainer trainer: trainers)
+	trainer.close();
+      for (Model replica: replicas)
+	replica.close();
+    }
+  }
+
+  /**
+   * Determines the class path for spawning worker processes: the class path
+   * of the JVM plus the jars of the class loader(s) of this class (e.g.,
+   * when loaded as Weka package).
+   *
+   * @return		the class path
+   */
+  protected String workerClassPath() {
+    List<String>	result;
+    ClassLoader		loader;
+
+    result = new ArrayList<>(Arrays.asList(System.getProperty("java.class.path").split(File.pathSeparator)));
+    loader = getClass().getClassLoader();
+    while (loader != null) {
+      if (loader instanceof URLClassLoader) {
+	for (URL url: ((URLClassLoader) loader).getURLs()) {
+	  try {
+	    if (!result.contains(new File(url.toURI()).getAbsolutePath()))
+	      result.add(new File(url.toURI()).getAbsolutePath());
+	  }
+	  catch (Exception e) {
+	    // ignored
+	  }
+	}
+      }
+      loader = loader.getParent();
+    }
+
+    return String.join(File.pathSeparator, result);
+  }
+
+  /**
+   * Trains the model data-parallel across the local process and the worker
+   * processes: the training rows get split into shards, with the local one
+   * being an index view on the featurized data and the others getting sent
+   * to the workers (together with this classifier and the dataset structure).
+   *
+   * @param model		the model to train
+   * @param dataset		the full dataset
+   * @param trainDataset	the training rows of the dataset
+   * @param validateDataset	the validation data (evaluated by the coordinator), can be null
+   * @throws Exception		if training fails
+   */
+  protected void trainDistributed(Model model, InstancesDataset dataset, IndexedDataset trainDataset, RandomAccessDataset validateDataset) throws Exception {
+    Instances			data;
+    int[]			rows;
+    List<List<Long>>		shards;
+    List<Process>		workers;
+    Instances			shard;
+    ByteArrayOutputStream	bytes;
+    int				numSteps;
+    int				numThreads;
+    int				i;
+
+    if (!dataset.isFusedPreprocessing())
+      throw new IllegalStateException("Data-parallel training requires fused preprocessing!");
+    if (m_EnsembleSize > 1)
+      throw new IllegalStateException("Data-parallel training does not support ensembles!");
+
+    data = dataset.getData();
+    rows = trainDataset.getRows();
+    if (rows.length <= m_NumWorkers)
+      throw new IllegalStateException("Fewer training rows than processes: " + rows.length + " <= " + m_NumWorkers);
+    shards = new ArrayList<>();
+    for (i = 0; i <= m_NumWorkers; i++)
+      shards.add(new ArrayList<>());
+    for (i = 0; i < rows.length; i++)
+      shards.get(i % shards.size()).add((long) rows[i]);
+    numSteps = Math.max(1, shards.get(shards.size() - 1).size() / m_MiniBatchSize);
+    // local processes share the available cores
+    numThreads = m_RemoteWorkers ? 0 : Math.max(1, Runtime.getRuntime().availableProcessors() / (m_NumWorkers + 1));
+
+    if (!model.getBlock().isInitialized())
+      model.getBlock().initialize(model.getNDManager(), DataType.FLOAT32, new Shape(1, dataset.getInputSize()));
+
+    workers = new ArrayList<>();
+    try (ServerSocket server = new ServerSocket(m_WorkerPort, m_NumWorkers, m_RemoteWorkers ? null : InetAddress.getLoopbackAddress())) {
+      if (m_RemoteWorkers || getDebug())
+	System.err.println("Waiting for " + m_NumWorkers + " worker(s) on port " + server.getLocalPort());
+      if (!m_RemoteWorkers) {
+	for (i = 0; i < m_NumWorkers; i++) {
+	  workers.add(new ProcessBuilder(
+	    new File(new File(System.getProperty("java.home"), "bin"), "java").getAbsolutePath(),
+	    "-cp", workerClassPath(),
+	    DistributedWorker.class.getName(),
+	    "-host", InetAddress.getLoopbackAddress().getHostAddress(),
+	    "-port", "" + server.getLocalPort(),
+	    "-timeout", "" + m_WorkerTimeout)
+			.inheritIO()
+			.start());
+	}
+      }
+
+      try (TcpAllReduce comm = TcpAllReduce.coordinator(server, m_NumWorkers, workers, m_WorkerTimeout)) {
+	for (i = 1; i < comm.getWorldSize(); i++) {
+	  shard = new Instances(data, shards.get(i).size());
+	  for (Long row: shards.get(i))
+	    shard.add(data.instance(row.intValue()));
+	  bytes = new ByteArrayOutputStream();
+	  try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+	    oos.writeObject(this);
+	    oos.writeObject(dataset.toJson().toString());
+	    oos.writeObject(shard);
+	    oos.writeInt(numSteps);
+	    oos.writeInt(numThreads);
+	  }
+	  comm.send(i, bytes.toByteArray());
+	}
+
+	if (getDebug())
+	  System.out.println("Data-parallel training: processes=" + comm.getWorldSize() + ", rows/shard=" + shards.get(0).size() + ", steps/epoch=" + numSteps);
+
+	if (numThreads > 0)
+	  DJLUtils.limitPyTorchNumThreads(numThreads);
+	try {
+	  trainDataParallel(model, dataset, IndexedDataset.shuffled(dataset, toRows(shards.get(0)), m_MiniBatchSize, m_Seed), validateDataset, m_NumEpochs, numSteps, comm);
+	}
+	finally {
+	  if (numThreads > 0)
+	    DJLUtils.releasePyTorchNumThreads();
+	}
+      }
+
+      for (Process worker: workers) {
+	if (!worker.waitFor(1, TimeUnit.MINUTES))
+	  worker.destroy();
+      }
+    }
+    finally {
+      for (Process worker: workers) {
+	if (worker.isAlive())
+	  worker.destroyForcibly();
+      }
+    }
+  }
+
+  /**
+   * Determines the stratum of each of the specified rows, i.e., the class
+   * label or, for a numeric class, the quantile bin of the class value
+   * (among the specified rows).
+   *
+   * @param data	the data to determine the strata for
+   * @param rows	the rows to determine the strata for
+   * @return		the strata (0-based), one per specified row
+   */
+  protected int[] determineStrata(Instances data, int[] rows) {
+    int[]	result;
+    Integer[]	order;
+    int		i;
+
+    result = new int[rows.length];
+    if (data.classAttribute().isNominal()) {
+      for (i = 0; i < result.length; i++)
+	result[i] = (int) data.instance(rows[i]).classValue();
+    }
+    else {
+      order = new Integer[result.length];
+      for (i = 0; i < order.length; i++)
+	order[i] = i;
+      Arrays.sort(order, (a, b) -> Double.compare(data.instance(rows[a]).classValue(), data.instance(rows[b]).classValue()));
+      for (i = 0; i < order.length; i++)
+	result[order[i]] = (int) ((long) i * NUM_STRATA / order.length);
+    }
+
+    return result;
+  }
+
+  /**
+   * Splits the dataset into train/validation sets (index views) according
+   * to the split strategy and the train percentage.
+   *
+   * @param dataset	the dataset to split
+   * @return		the train and validation sets
+   */
+  protected IndexedDataset[] splitDataset(InstancesDataset dataset) {
+    int[]	rows;
+    int		i;
+
+    rows = new int[Math.toIntExact(dataset.size())];
+    for (i = 0; i < rows.length; i++)
+      rows[i] = i;
+
+    return splitDataset(dataset, rows);
+  }
+
+  /**
+   * Splits the specified rows of the dataset into train/validation sets
+   * (index views) according to the split strategy and the train percentage.
+   *
+   * @param dataset	the dataset to split
+   * @param rows	the rows to split, in ascending order
+   * @return		the train and validation sets
+   */
+  protected IndexedDataset[] splitDataset(InstancesDataset dataset, int[] rows) {
+    IndexedDataset	subset;
+
+    subset = IndexedDataset.sequential(dataset, rows, m_MiniBatchSize);
+    switch (m_SplitStrategy) {
+      case RANDOM:
+	return IndexedDataset.split(subset, m_MiniBatchSize, m_Seed, m_TrainPercentage, 100 - m_TrainPercentage);
+      case ORDERED:
+	return IndexedDataset.orderedSplit(subset, m_MiniBatchSize, m_Seed, m_TrainPercentage, 100 - m_TrainPercentage);
+      case STRATIFIED:
+	return IndexedDataset.stratifiedSplit(subset, determineStrata(dataset.getData(), rows), m_MiniBatchSize, m_Seed, m_TrainPercentage, 100 - m_TrainPercentage);
+      default:
+	throw new IllegalStateException("Unhandled split strategy: " + m_SplitStrategy);
+    }
+  }
+
+  /**
+   * Turns the list of row indices into an array.
+   *
+   * @param rows	the row indices
+   * @return		the array
+   */
+  protected int[] toRows(List<Long> rows) {
+    int[]	result;
+    int		i;
+
+    result = new int[rows.size()];
+    for (i = 0; i < rows.size(); i++)
+      result[i] = rows.get(i).intValue();
+
+    return result;
+  }
+
+  /**
+   * Removes all .params files of the model from the directory.
+   *
+   * @param modelDir	the directory with the model files
+   * @param modelID	the ID of the model
+   */
+  protected void removeParams(File modelDir, String modelID) {
+    File[]	files;
+
+    files = modelDir.listFiles();
+    if (files == null)
+      return;
+
+    for (File f: files) {
+      if (f.getName().matches("^" + modelID + "-[0-9]+.params$")) {
+	if (getDebug())
+	  System.out.println("Removing: " + f);
+	try {
+	  if (!f.delete())
+	    System.err.println("Failed to delete: " + f);
+	}
+	catch (Exception e) {
+	  System.err.println("Failed to delete: " + f);
+	  e.printStackTrace();
+	}
+      }
+    }
+  }
+
+  /**
+   * Saves the current model parameters to the model directory.
+   *
+   * @throws Exception	if saving fails
+   */
+  protected void saveModel() throws Exception {
+    ZooModel<float[], float[]> 	zooModel;
+
+    if (getDebug())
+      System.out.println("Saving model '" + m_ModelID + "' to: " + m_ModelDir);
+    zooModel = new ZooModel<>(m_Model, m_Translator);
+    zooModel.save(m_ModelDir.toPath(), m_ModelID);
+    Files.write(new File(m_ModelDir, m_ModelID + ".json").toPath(), m_DatasetConfig.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Initializes the parameters of the model with the ones from the saved
+   * model specified by {@link #getWarmStart()}. The dataset structure that
+   * got saved alongside must have the same features and labels.
+   *
+   * @param model	the model to initialize
+   * @param dataset	the dataset the model is trained on
+   * @throws Exception	if the saved model is incompatible or fails to load
+   */
+  protected void warmStart(Model model, InstancesDataset dataset) throws Exception {
+    int		pos;
+    File	dir;
+    String	id;
+    File	structureFile;
+    JsonObject	structure;
+
+    pos = m_WarmStart.lastIndexOf('|');
+    if (pos < 1)
+      throw new IllegalArgumentException("Warm-start model must be in format 'dir|id': " + m_WarmStart);
+    dir = new File(m_WarmStart.substring(0, pos));
+    id  = m_WarmStart.substring(pos + 1);
+
+    structureFile = new File(dir, id + ".json");
+    if (!structureFile.exists())
+      throw new IllegalArgumentException("Dataset structure of warm-start model not found: " + structureFile);
+    structure = JsonParser.parseString(new String(Files.readAllBytes(structureFile.toPath()), StandardCharsets.UTF_8)).getAsJsonObject();
+    if (!structure.get("features").equals(dataset.toJson().get("features")))
+      throw new IllegalArgumentException("Features of warm-start model are incompatible: " + structureFile);
+    if (!structure.get("labels").equals(dataset.toJson().get("labels")))
+      throw new IllegalArgumentException("Labels of warm-start model are incompatible: " + structureFile);
+
+    if (getDebug())
+      System.out.println("Warm-starting from model '" + id + "' in: " + dir);
+    model.load(dir.toPath(), id);
+  }
+
+  /**
+   * Performs a forward pass of the features through the network of the model.
+   * The features get cast to the data type of the model if necessary, the
+   * output is always float32.
+   *
+   * @param model		the model to use
+   * @param parameterStore	the parameter store to use
+   * @param features		the batch of features
+   * @return			the output of the network
+   */
+  protected NDArray forward(Model model, ParameterStore parameterStore, NDArray features) {
+    NDArray	result;
+
+    if (features.getDataType() != model.getDataType())
+      features = features.toType(model.getDataType(), false);
+    result = model.getBlock().forward(parameterStore, new NDList(features), false).get(0);
+    if (result.getDataType() != DataType.FLOAT32)
+      result = result.toType(DataType.FLOAT32, false);
+
+    return result;
+  }
+
+  /**
+   * Makes predictions for the specified rows of the (prepared) dataset,
+   * using batches of size {@link #getBatchSize()}.
+   *
+   * @param model	the model to use
+   * @param dataset	the prepared dataset
+   * @param rows	the rows to make predictions for
+   * @return		the predictions (rows x outputs), probabilities in case of softmax output
+   */
+  protected float[][] predict(Model model, InstancesDataset dataset, List<Long> rows) {
+    float[][]		result;
+    int			batchSize;
+    int			start;
+    int			end;
+    int			i;
+    ParameterStore	parameterStore;
+    NDArray		output;
+    float[]		values;
+    int			numOutputs;
+
+    result     = new float[rows.size()][];
+    batchSize  = Integer.parseInt(getBatchSize());
+    numOutputs = dataset.getLabelSize();
+
+    try (NDManager manager = model.getNDManager().newSubManager()) {
+      parameterStore = new ParameterStore(manager, false);
+      for (start = 0; start < rows.size(); start += batchSize) {
+	end = Math.min(rows.size(), start + batchSize);
+	try (NDManager scope = manager.newSubManager()) {
+	  output = forward(model, parameterStore, dataset.getFeatureBatch(scope, rows.subList(start, end)));
+	  if (hasSoftmaxOutput())
+	    output = output.softmax(-1);
+	  values = output.toFloatArray();
+	  for (i = start; i < end; i++)
+	    result[i] = Arrays.copyOfRange(values, (i - start) * numOutputs, (i - start + 1) * numOutputs);
+	}
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Computes the error of the model on the dataset.
+   *
+   * @param model	the model to evaluate
+   * @param dataset	the dataset to evaluate on
+   * @return		the error, NaN if the dataset is empty
+   * @throws IOException	if retrieving the records fails
+   * @see		#getErrorName()
+   */
+  protected double computeError(Model model, RandomAccessDataset dataset) throws IOException {
+    double		result;
+    int			batchSize;
+    long		start;
+    long		end;
+    long		i;
+    ParameterStore	parameterStore;
+    NDList		features;
+    NDList		labels;
+    Record		record;
+    NDArray		output;
+
+    if (dataset.size() == 0)
+      return Double.NaN;
+
+    result    = 0.0;
+    batchSize = Integer.parseInt(getBatchSize());
+
+    try (NDManager manager = model.getNDManager().newSubManager()) {
+      parameterStore = new ParameterStore(manager, false);
+      for (start = 0; start < dataset.size(); start += batchSize) {
+	end = Math.min(dataset.size(), start + batchSize);
+	try (NDManager scope = manager.newSubManager()) {
+	  features = new NDList();
+	  labels   = new NDList();
+	  for (i = start; i < end; i++) {
+	    record = dataset.get(scope, i);
+	    features.add(record.getData().head());
+	    labels.add(record.getLabels().head());
+	  }
+	  output = forward(model, parameterStore, NDArrays.stack(features));
+	  result += computeBatchError(output, NDArrays.stack(labels));
+	}
+      }
+    }
+
+    return finalizeError(result, dataset.size());
+  }
+
+  /**
+   * Converts the network parameters of the model to the inference precision
+   * and generates a report on the effect on the validation set (if any).
+   *
+   * @param model		the trained model to convert
+   * @param dataset		the dataset the model was trained on
+   * @param validateDataset	the validation data, can be null
+   * @throws IOException	if retrieving the validation records fails
+   */
+  protected void applyInferencePrecision(Model model, InstancesDataset dataset, RandomAccessDataset validateDataset) throws IOException {
+    Block	trained;
+    Block	converted;
+    double	before;
+    double	after;
+
+    trained   = model.getBlock();
+    converted = generateNetwork(dataset);
+    converted.initialize(model.getNDManager(), m_InferencePrecision.getDataType(), new Shape(1, dataset.getInputSize()));
+
+    before = (validateDataset != null) ? computeError(model, validateDataset) : 0.0;
+    DJLUtils.copyParameters(trained, converted);
+    model.setBlock(converted);
+    model.setDataType(m_InferencePrecision.getDataType());
+    for (Parameter param: trained.getParameters().values())
+      param.close();
+    if (validateDataset == null)
+      return;
+    after = computeError(model, validateDataset);
+
+    m_PrecisionReport = "Validation " + getErrorName() + " (" + Precision.FLOAT32 + "): " + Utils.doubleToString(before, getNumDecimalPlaces() + 4) + "\n"
+			  + "Validation " + getErrorName() + " (" + m_InferencePrecision + "): " + Utils.doubleToString(after, getNumDecimalPlaces() + 4) + "\n"
+			  + "Delta: " + Utils.doubleToString(after - before, getNumDecimalPlaces() + 4) + "\n";
+    if (getDebug())
+      System.out.println(m_PrecisionReport);
+  }
+
+  /**
+   * Creates the translator for making predictions.
+   *
+   * @param dataset	the dataset to create the translator for
+   * @param dataType	the data type of the network parameters
+   * @return		the translator
+   */
+  protected Translator<float[], float[]> newTranslator(InstancesDataset dataset, DataType dataType) {
+    Translator<float[], float[]>	result;
+
+    result = new FloatFeaturesTranslator(dataset.getInputSize(), hasSoftmaxOutput());
+    if (dataType != DataType.FLOAT32)
+      result = new PrecisionTranslator<>(result, dataType);
+
+    return result;
+  }
+
+  /**
+   * Generates a classifier. Must initialize all fields of the classifier
+   * that are not being set via options (ie. multiple calls of buildClassifier
+   * must always lead to the same result). Must not change the dataset
+   * in any way.
+   *
+   * @param data set of instances serving as training data
+   * @throws Exception if the classifier has not been
+   *                   generated successfully
+   */
+  @Override
+  public void buildClassifier(Instances data) throws Exception {
+    IndexedDataset[]		splitDataset;
+    IndexedDataset		trainDataset;
+    RandomAccessDataset		validateDataset;
+    String			modelID;
+    File			modelDir;
+    String			modelName;
+
+    getCapabilities().test(data);
+    data = removeMissingTargets(data);
+
+    modelID   = m_ID.generate() + (m_SupportParallelExecution ? UniqueIDs.next() : "");
+    modelDir  = m_OutputDir.generate().getAbsoluteFile();
+    modelName = modelDir + "|" + modelID;
+
+    if (getDebug())
+      System.out.println("Training model: " + modelID);
+
+    DJLUtils.initClassLoader(this);
+    DJLUtils.registerPytorch();
+    DJLUtils.setPyTorchSeed(m_Seed);
+
+    closeModel();
+    m_Dataset = newDataset(data);
+    try {
+      m_DatasetConfig = m_Dataset.toJson().toString();
+      splitDataset    = splitDataset(m_Dataset);
+      trainDataset    = splitDataset[0];
+      validateDataset = (splitDataset[1].size() > 0) ? splitDataset[1] : null;
+
+      synchronized (m_Models) {
+	if (m_Models.containsKey(modelName)) {
+	  m_Models.get(modelName).close();
+	  m_Models.remove(modelName);
+	}
+	m_Model = Model.newInstance(modelName);
+	m_Model.setBlock(generateNetwork(m_Dataset));
+	m_Models.put(modelName, m_Model);
+      }
+
+      if (!m_WarmStart.isEmpty())
+	warmStart(m_Model, m_Dataset);
+
+      if (m_NumWorkers > 0) {
+	m_ActiveTrainingConfig = null;
+	trainDistributed(m_Model, m_Dataset, trainDataset, validateDataset);
+      }
+      else if (m_NumReplicas > 1) {
+	m_ActiveTrainingConfig = null;
+	trainParameterAveraging(m_Model, m_Dataset, trainDataset, validateDataset);
+      }
+      else if (m_EnsembleSize > 1) {
+	m_ActiveTrainingConfig = null;
+	trainEnsemble(m_Model, m_Dataset, trainDataset, validateDataset);
+      }
+      else {
+	m_ActiveTrainingConfig = m_TrainingConfig.generate();
+	train(m_Model, m_Dataset, m_ActiveTrainingConfig, m_NumEpochs, trainDataset, validateDataset);
+      }
+
+      m_PrecisionReport = null;
+      if (m_InferencePrecision != Precision.FLOAT32)
+	applyInferencePrecision(m_Model, m_Dataset, validateDataset);
+
+      m_Translator   = newTranslator(m_Dataset, m_Model.getDataType());
+      m_Header       = new Instances(data, 0);
+      m_ModelID      = modelID;
+      m_ModelDir     = modelDir;
+      m_UpdateBuffer = null;
+      if (m_Predictor != null) {
+	m_Predictor.close();
+	m_Predictor = null;
+      }
+      if (m_PredictorPool != null) {
+	m_PredictorPool.close();
+	m_PredictorPool = null;
+      }
+
+      if (getDebug())
+	System.out.println("Native memory of model '" + modelID + "': parameters=" + getParameterMemory() + ", managed=" + Utils.arrayToString(getManagedMemory()));
+
+      // delete any left-over .params files
+      removeParams(modelDir, modelID);
+      saveModel();
+    }
+    finally {
+      InstancesDatasetCache.release(m_Dataset);
+    }
+
+    // the featurized training data is not required for predictions
+    m_Dataset = newStructureDataset();
+  }
+
+  /**
+   * Continues training the current network on the data for the specified
+   * number of epochs, starting from the current parameters (and optimizer
+   * state, if the model was trained in this session). The updated parameters
+   * get saved to the model directory again.
+   *
+   * @param data	the data to fine-tune with
+   * @param numEpochs	the number of epochs
+   * @throws Exception	if fine-tuning fails
+   */
+  public void fineTune(Instances data, int numEpochs) throws Exception {
+    InstancesDataset	dataset;
+    String		msg;
+
+    if (m_Header == null)
+      throw new IllegalStateException("No model built yet!");
+    msg = m_Header.equalHeadersMsg(data);
+    if (msg != null)
+      throw new IllegalArgumentException("Incompatible data: " + msg);
+    data = removeMissingTargets(data);
+    if (data.numInstances() == 0)
+      return;
+
+    initPrediction();
+    if (m_Model.getDataType() != DataType.FLOAT32)
+      throw new IllegalStateException("Cannot fine-tune a model that uses precision " + m_Model.getDataType() + "!");
+
+    if (getDebug())
+      System.out.println("Fine-tuning model '" + m_ModelID + "' with " + data.numInstances() + " instance(s) for " + numEpochs + " epoch(s)");
+
+    dataset = m_Dataset.withData(data, m_MiniBatchSize);
+    dataset.prepare();
+
+    if (m_ActiveTrainingConfig == null)
+      m_ActiveTrainingConfig = m_TrainingConfig.generate();
+    train(m_Model, dataset, m_ActiveTrainingConfig, numEpochs, dataset, null);
+
+    removeParams(m_ModelDir, m_ModelID);
+    saveModel();
+  }
+
+  /**
+   * Updates the classifier with the given instance. The instances get
+   * buffered and the network gets fine-tuned for a single epoch whenever
+   * the buffer reaches the mini-batch size.
+   *
+   * @param instance	the new training instance
+   * @throws Exception	if fine-tuning fails
+   */
+  @Override
+  public void updateClassifier(Instance instance) throws Exception {
+    if (m_Header == null)
+      throw new IllegalStateException("No model built yet!");
+    if (instance.classIsMissing())
+      return;
+
+    if (m_UpdateBuffer == null)
+      m_UpdateBuffer = new Instances(m_Header, m_MiniBatchSize);
+    m_UpdateBuffer.add(instance);
+
+    if (m_UpdateBuffer.numInstances() >= m_MiniBatchSize)
+      flushUpdates();
+  }
+
+  /**
+   * Fine-tunes the network with any buffered instances from incremental
+   * updates, even if the mini-batch is not complete yet.
+   *
+   * @throws Exception	if fine-tuning fails
+   */
+  public void flushUpdates() throws Exception {
+    Instances	buffer;
+
+    if ((m_UpdateBuffer == null) || (m_UpdateBuffer.numInstances() == 0))
+      return;
+
+    buffer         = m_UpdateBuffer;
+    m_UpdateBuffer = new Instances(m_Header, m_MiniBatchSize);
+    fineTune(buffer, 1);
+  }
+
+  /**
+   * Returns the header of the training data.
+   *
+   * @return		the header, null if not yet trained
+   */
+  public Instances getHeader() {
+    return m_Header;
+  }
+
+  /**
+   * Returns the names of the attributes that the network uses as features.
+   *
+   * @return		the names
+   */
+  public String[] getFeatureNames() {
+    String[]	result;
+    int		i;
+
+    initPrediction();
+    result = new String[m_Dataset.getFeatures().size()];
+    for (i = 0; i < result.length; i++)
+      result[i] = m_Dataset.getFeatures().get(i).getName();
+
+    return result;
+  }
+
+  /**
+   * Creates the dataset for predictions from the header and the structure
+   * (features, labels and their statistics) of the training data, i.e.,
+   * without any featurized rows.
+   *
+   * @return		the dataset
+   * @throws Exception	if the dataset cannot be created
+   */
+  protected InstancesDataset newStructureDataset() throws Exception {
+    return InstancesDataset.builder()
+	     .setSampling(m_MiniBatchSize, true)
+	     .data(m_Header)
+	     .fromJson(m_DatasetConfig)
+	     .build();
+  }
+
+  /**
+   * Prepares the classifier for predictions. Synchronized, as concurrent
+   * first predictions would otherwise each load the model and create
+   * a pool of predictors.
+   */
+  public synchronized void initPrediction() {
+    String 	modelID;
+    Path 	modelPath;
+
+    if (m_ModelID != null) {
+      modelID   = m_ModelID;
+      modelPath = m_ModelDir.toPath();
+    }
+    else {
+      modelID   = m_ID.generate();
+      modelPath = m_OutputDir.generate().toPath();
+    }
+
+    if (m_Model == null) {
+      if (getDebug())
+	System.out.println("Loading model '" + modelID + "' from: " + modelPath);
+      try {
+	m_Dataset = newStructureDataset();
+	m_Model = Model.newInstance(modelID);
+	m_Model.setBlock(generateNetwork(m_Dataset));
+	m_Model.load(modelPath);
+	m_Model.setDataType(DJLUtils.getParameterDataType(m_Model.getBlock()));
+	m_Translator = newTranslator(m_Dataset, m_Model.getDataType());
+      }
+      catch (Exception e) {
+	throw new IllegalStateException("Failed to recreate DJL dataset from config!", e);
+      }
+    }
+
+    if (m_Predictor == null) {
+      if (getDebug())
+	System.out.println("Instantiating predictor for model: " + modelID);
+      m_Predictor = m_Model.newPredictor(m_Translator);
+    }
+
+    if (m_BufferedPrediction && (m_PredictorPool == null))
+      m_PredictorPool = new PredictorPool(
+	m_Model, Integer.parseInt(getBatchSize()), m_Dataset.getInputSize(), hasSoftmaxOutput(),
+	Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Closes the predictor and the model (if any), removing the model from
+   * the map of models.
+   */
+  protected synchronized void closeModel() {
+    if (m_Predictor != null) {
+      m_Predictor.close();
+      m_Predictor = null;
+    }
+    if (m_PredictorPool != null) {
+      m_PredictorPool.close();
+      m_PredictorPool = null;
+    }
+    if (m_Model != null) {
+      synchronized (m_Models) {
+	m_Models.remove(m_Model.getName(), m_Model);
+      }
+      m_Model.close();
+      m_Model = null;
+    }
+  }
+
+  /**
+   * Returns the number of bytes that the parameters of the model occupy
+   * in native memory.
+   *
+   * @return		the number of bytes, 0 if no model present
+   */
+  public long getParameterMemory() {
+    if (m_Model == null)
+      return 0;
+    return DJLUtils.getParameterBytes(m_Model.getBlock());
+  }
+
+  /**
+   * Returns the number of arrays (and the bytes they occupy) managed by the
+   * manager of the model, i.e., parameters, optimizer state and anything
+   * allocated by predictions that has not been released. This should stay
+   * constant across predictions, growth indicates a leak.
+   *
+   * @return		the number of arrays and bytes, zeros if no model present
+   */
+  public long[] getManagedMemory() {
+    if (m_Model == null)
+      return new long[2];
+    return DJLUtils.getManagedArrays(m_Model.getNDManager());
+  }
+
+  /**
+   * Generates a report of the native memory used by all models that are
+   * currently held by DJL classifiers in this process.
+   *
+   * @return		the report
+   */
+  public static String getNativeMemoryReport() {
+    StringBuilder	result;
+    long[]		managed;
+
+    result = new StringBuilder();
+    synchronized (m_Models) {
+      for (Model model: m_Models.values()) {
+	managed = DJLUtils.getManagedArrays(model.getNDManager());
+	result.append(model.getName())
+	  .append(": parameters=").append(DJLUtils.getParameterBytes(model.getBlock()))
+	  .append(", arrays=").append(managed[0])
+	  .append(", bytes=").append(managed[1])
+	  .append("\n");
+      }
+    }
+
+    return result.toString();
+  }
+
+  /**
+   * Turns the output of the network into a distribution.
+   *
+   * @param output	the output (probabilities in case of softmax output)
+   * @return		the distribution
+   */
+  protected double[] toDistribution(float[] output) {
+    double[]	result;
+    int		i;
+
+    result = new double[output.length];
+    for (i = 0; i < output.length; i++)
+      result[i] = output[i];
+
+    return result;
+  }
+
+  /**
+   * Predicts the class memberships for a given instance. The instance has
+   * to belong to a dataset when it's being classified.
+   *
+   * @param instance the instance to be classified
+   * @return the class membership probabilities for a nominal class or
+   *         the numeric prediction for a numeric class
+   * @throws Exception if an error occurred during the prediction
+   */
+  @Override
+  public double[] distributionForInstance(Instance instance) throws Exception {
+    initPrediction();
+    return toDistribution(m_Predictor.predict(m_Dataset.encodeFeatures(instance)));
+  }
+
+  /**
+   * Returns whether the classifier can make batch predictions more efficiently.
+   *
+   * @return		always true
+   */
+  @Override
+  public boolean implementsMoreEfficientBatchPrediction() {
+    return true;
+  }
+
+  /**
+   * Makes predictions for the instances, using batches of size {@link #getBatchSize()}.
+   *
+   * @param insts	the instances to make predictions for
+   * @return		the predictions
+   * @throws Exception	if predictions fail
+   */
+  @Override
+  public double[][] distributionsForInstances(Instances insts) throws Exception {
+    double[][]		result;
+    List<float[]>	outputs;
+    int			i;
+
+    outputs = predictOutputs(insts);
+    result  = new double[outputs.size()][];
+    for (i = 0; i < outputs.size(); i++)
+      result[i] = toDistribution(outputs.get(i));
+
+    return result;
+  }
+
+  /**
+   * Obtains the raw outputs of the network for the instances, using batches
+   * of size {@link #getBatchSize()}; with buffered prediction, via a
+   * {@link BufferedPredictor} from the pool.
+   *
+   * @param insts	the instances to make predictions for
+   * @return		the outputs (probabilities in case of softmax output)
+   * @throws Exception	if predictions fail
+   */
+  protected List<float[]> predictOutputs(Instances insts) throws Exception {
+    List<float[]>	result;
+    List<float[]>	batch;
+    BufferedPredictor	predictor;
+    int[]		positions;
+    float[]		features;
+    int			batchSize;
+    int			start;
+    int			end;
+    int			i;
+
+    initPrediction();
+
+    result = new ArrayList<>(insts.numInstances());
+
+    if (m_PredictorPool != null) {
+      predictor = m_PredictorPool.acquire();
+      try {
+	predictor.predict(m_Dataset, insts, 0, insts.numInstances(), result);
+      }
+      finally {
+	m_PredictorPool.release(predictor);
+      }
+      return result;
+    }
+
+    batchSize = Integer.parseInt(getBatchSize());
+    positions = m_Dataset.isFusedPreprocessing() ? m_Dataset.featurePositions(insts) : null;
+    for (start = 0; start < insts.numInstances(); start += batchSize) {
+      end   = Math.min(insts.numInstances(), start + batchSize);
+      batch = new ArrayList<>();
+      for (i = start; i < end; i++) {
+	features = new float[m_Dataset.getInputSize()];
+	m_Dataset.encodeFeatures(insts.instance(i), positions, features, 0);
+	batch.add(features);
+      }
+      result.addAll(m_Predictor.batchPredict(batch));
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns a short description of the setup.
+   *
+   * @return		the description
+   */
+  @Override
+  public String toString() {
+    StringBuilder	result;
+
+    result = new StringBuilder();
+    result.append("Network generator...: ").append(Utils.toCommandLine(getNetwork())).append("\n");
+    result.append("Train %.............: ").append(getTrainPercentage()).append("\n");
+    result.append("Split strategy......: ").append(getSplitStrategy()).append("\n");
+    result.append("Mini batch size.....: ").append(getMiniBatchSize()).append("\n");
+    result.append("# epochs............: ").append(getNumEpochs()).append("\n");
+    result.append("ID generator........: ").append(Utils.toCommandLine(getID())).append("\n");
+    result.append("Output dir generator: ").append(Utils.toCommandLine(getOutputDir())).append("\n");
+    result.append("Fused preprocessing.: ").append(getFusedPreprocessing()).append("\n");
+    result.append("Sparse storage......: ").append(getSparseStorage()).append("\n");
+    result.append("Training precision..: ").append(getTrainingPrecision()).append("\n");
+    if (m_PrecisionReport != null)
+      result.append("\n").append(m_PrecisionReport);
+
+    return result.toString();
+  }
+
+  /**
+   * Closes this resource, relinquishing any underlying resources.
+   * This method is invoked automatically on objects managed by the
+   * {@code try}-with-resources statement.
+   *
+   * <p>While this interface method is declared to throw {@code
+   * Exception}, implementers are <em>strongly</em> encouraged to
+   * declare concrete implementations of the {@code close} method to
+   * throw more specific exceptions, or to throw no exception at all
+   * if the close operation cannot fail.
+   *
+   * <p> Cases where the close operation may fail require careful
+   * attention by implementers. It is strongly advised to relinquish
+   * the underlying resources and to internally <em>mark</em> the
+   * resource as closed, prior to throwing the exception. The {@code
+   * close} method is unlikely to be invoked more than once and so
+   * this ensures that the resources are released in a timely manner.
+   * Furthermore it reduces problems that could arise when the resource
+   * wraps, or is wrapped, by another resource.
+   *
+   * <p><em>Implementers of this interface are also strongly advised
+   * to not have the {@code close} method throw {@link
+   * InterruptedException}.</em>
+   * <p>
+   * This exception interacts with a thread's interrupted status,
+   * and runtime misbehavior is likely to occur if an {@code
+   * InterruptedException} is {@linkplain Throwable#addSuppressed
+   * suppressed}.
+   * <p>
+   * More generally, if it would cause problems for an
+   * exception to be suppressed, the {@code AutoCloseable.close}
+   * method should not throw it.
+   *
+   * <p>Note that unlike the {@link Closeable#close close}
+   * method of {@link Closeable}, this {@code close} method
+   * is <em>not</em> required to be idempotent.  In other words,
+   * calling this {@code close} method more than once may have some
+   * visible side effect, unlike {@code Closeable.close} which is
+   * required to have no effect if called more than once.
+   * <p>
+   * However, implementers of this interface are strongly encouraged
+   * to make their {@code close} methods idempotent.
+   *
+   * @throws Exception if this resource cannot be closed
+   */
+  @Override
+  public void close() throws Exception {
+    m_Dataset = null;
+    closeModel();
+  }
+}
@@ -0,0 +1,205 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * BufferedPredictor.java
+ * Copyright (C) 2025 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.classifiers.djl;
+
+import ai.djl.Model;
+import ai.djl.ndarray.NDArray;
+import ai.djl.ndarray.NDList;
+import ai.djl.ndarray.NDManager;
+import ai.djl.ndarray.types.DataType;
+import ai.djl.ndarray.types.Shape;
+import ai.djl.training.ParameterStore;
+import weka.classifiers.djl.dataset.InstancesDataset;
+import weka.core.Instances;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Predictor for batches of a fixed size: the input tensor (batch size x
+ * features) and a direct staging buffer get allocated once and are
+ * overwritten in place for every batch, with the last batch padded with
+ * zeros. The features of instances get encoded straight into a reusable
+ * array. Only the outputs of the network get allocated per batch, within a
+ * temporary manager that is closed after the batch.
+ * <br>
+ * A predictor is not thread-safe, use a {@link PredictorPool} for
+ * concurrent predictions.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class BufferedPredictor
+  implements AutoCloseable {
+
+  /** the model to use. */
+  protected Model m_Model;
+
+  /** the batch size. */
+  protected int m_BatchSize;
+
+  /** the number of features. */
+  protected int m_NumFeatures;
+
+  /** whether to apply softmax to the output. */
+  protected boolean m_Softmax;
+
+  /** the manager for the buffers. */
+  protected NDManager m_Manager;
+
+  /** the parameter store. */
+  protected ParameterStore m_ParameterStore;
+
+  /** the features of the current batch. */
+  protected float[] m_Features;
+
+  /** the direct staging buffer. */
+  protected ByteBuffer m_Staging;
+
+  /** the float view on the staging buffer. */
+  protected FloatBuffer m_StagingFloats;
+
+  /** the input tensor. */
+  protected NDArray m_Input;
+
+  /**
+   * Initializes the predictor.
+   *
+   * @param model	the model to use
+   * @param batchSize	the batch size
+   * @param numFeatures	the number of features
+   * @param softmax	whether to apply softmax to the output
+   */
+  public BufferedPredictor(Model model, int batchSize, int numFeatures, boolean softmax) {
+    m_Model          = model;
+    m_BatchSize      = batchSize;
+    m_NumFeatures    = numFeatures;
+    m_Softmax        = softmax;
+    m_Manager        = model.getNDManager().newSubManager();
+    m_ParameterStore = new ParameterStore(m_Manager, false);
+    m_Features       = new float[batchSize * numFeatures];
+    m_Staging        = ByteBuffer.allocateDirect(m_Features.length * 4).order(ByteOrder.nativeOrder());
+    m_StagingFloats  = m_Staging.asFloatBuffer();
+    m_Input          = m_Manager.create(new Shape(batchSize, numFeatures), DataType.FLOAT32);
+  }
+
+  /**
+   * Returns the batch size.
+   *
+   * @return		the batch size
+   */
+  public int getBatchSize() {
+    return m_BatchSize;
+  }
+
+  /**
+   * Makes predictions for the staged features of the specified number of
+   * rows, padding the remainder of the batch with zeros.
+   *
+   * @param count	the number of rows staged
+   * @param outputs	for adding the outputs of the rows to
+   */
+  protected void predictStaged(int count, List<float[]> outputs) {
+    NDArray	output;
+    float[]	values;
+    int		numOutputs;
+    int		i;
+
+    if (count < m_BatchSize)
+      Arrays.fill(m_Features, count * m_NumFeatures, m_Features.length, 0.0f);
+    m_StagingFloats.clear();
+    m_StagingFloats.put(m_Features);
+    m_Staging.rewind();
+    m_Input.set(m_Staging);
+
+    try (NDManager scope = m_Manager.newSubManager()) {
+      m_Input.tempAttach(scope);
+      output = m_Input;
+      if (output.getDataType() != m_Model.getDataType())
+	output = output.toType(m_Model.getDataType(), false);
+      output = m_Model.getBlock().forward(m_ParameterStore, new NDList(output), false).get(0);
+      if (output.getDataType() != DataType.FLOAT32)
+	output = output.toType(DataType.FLOAT32, false);
+      if (m_Softmax)
+	output = output.softmax(-1);
+      values = output.toFloatArray();
+    }
+
+    numOutputs = values.length / m_BatchSize;
+    for (i = 0; i < count; i++)
+      outputs.add(Arrays.copyOfRange(values, i * numOutputs, (i + 1) * numOutputs));
+  }
+
+  /**
+   * Makes predictions for the encoded features.
+   *
+   * @param features	the encoded features
+   * @param outputs	for adding the outputs to
+   */
+  public void predict(List<float[]> features, List<float[]> outputs) {
+    int		start;
+    int		count;
+    int		i;
+
+    for (start = 0; start < features.size(); start += m_BatchSize) {
+      count = Math.min(m_BatchSize, features.size() - start);
+      for (i = 0; i < count; i++)
+	System.arraycopy(features.get(start + i), 0, m_Features, i * m_NumFeatures, m_NumFeatures);
+      predictStaged(count, outputs);
+    }
+  }
+
+  /**
+   * Makes predictions for a range of instances, encoding them straight into
+   * the batch buffer. The positions of the attributes among the features only
+   * get determined once per call.
+   *
+   * @param dataset	the dataset for encoding the features
+   * @param insts	the instances
+   * @param start	the first instance (incl)
+   * @param end		the last instance (excl)
+   * @param outputs	for adding the outputs to
+   */
+  public void predict(InstancesDataset dataset, Instances insts, int start, int end, List<float[]> outputs) {
+    int[]	positions;
+    int		offset;
+    int		count;
+    int		i;
+
+    positions = dataset.isFusedPreprocessing() ? dataset.featurePositions(insts) : null;
+    for (offset = start; offset < end; offset += m_BatchSize) {
+      count = Math.min(m_BatchSize, end - offset);
+      for (i = 0; i < count; i++)
+	dataset.encodeFeatures(insts.instance(offset + i), positions, m_Features, i * m_NumFeatures);
+      predictStaged(count, outputs);
+    }
+  }
+
+  /**
+   * Releases the buffers.
+   */
+  @Override
+  public void close() {
+    m_Manager.close();
+  }
+}
@@ -0,0 +1,399 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * BulkScorer.java
+ * Copyright (C) 2025 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.classifiers.djl;
+
+import weka.core.Attribute;
+import weka.core.Instances;
+import weka.core.SerializationHelper;
+import weka.core.Utils;
+import weka.core.converters.ConverterUtils.DataSource;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Scores large ARFF/CSV files with a serialized DJL classifier/regressor
+ * (derived from {@link AbstractDJLClassifier}) without loading them into
+ * memory: the rows get streamed from disk in chunks, the chunks get scored
+ * in parallel using a pool of {@link BufferedPredictor} instances, and the
+ * predictions get written in input order as CSV. Only a limited number of
+ * chunks is in flight at any time.
+ * <br>
+ * For a {@link DJLRegressor}, the predictions of all targets get output,
+ * for classifiers the predicted label followed by the class probabilities.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class BulkScorer {
+
+  /** the serialized model. */
+  protected File m_Model = new File(".");
+
+  /** the file to score. */
+  protected File m_Input = new File(".");
+
+  /** the file to write the predictions to. */
+  protected File m_Output = new File(".");
+
+  /** the number of rows per chunk. */
+  protected int m_ChunkSize = 10000;
+
+  /** the number of threads (0 = number of cores). */
+  protected int m_NumThreads = 0;
+
+  /** whether to output debugging information. */
+  protected boolean m_Debug = false;
+
+  /**
+   * Sets the serialized model to use.
+   *
+   * @param value	the model file
+   */
+  public void setModel(File value) {
+    m_Model = value;
+  }
+
+  /**
+   * Returns the serialized model to use.
+   *
+   * @return		the model file
+   */
+  public File getModel() {
+    return m_Model;
+  }
+
+  /**
+   * Sets the ARFF/CSV file to score.
+   *
+   * @param value	the file
+   */
+  public void setInput(File value) {
+    m_Input = value;
+  }
+
+  /**
+   * Returns the ARFF/CSV file to score.
+   *
+   * @return		the file
+   */
+  public File getInput() {
+    return m_Input;
+  }
+
+  /**
+   * Sets the CSV file to write the predictions to.
+   *
+   * @param value	the file
+   */
+  public void setOutput(File value) {
+    m_Output = value;
+  }
+
+  /**
+   * Returns the CSV file to write the predictions to.
+   *
+   * @return		the file
+   */
+  public File getOutput() {
+    return m_Output;
+  }
+
+  /**
+   * Sets the number of rows per chunk.
+   *
+   * @param value	the number of rows
+   */
+  public void setChunkSize(int value) {
+    if (value >= 1)
+      m_ChunkSize = value;
+  }
+
+  /**
+   * Returns the number of rows per chunk.
+   *
+   * @return		the number of rows
+   */
+  public int getChunkSize() {
+    return m_ChunkSize;
+  }
+
+  /**
+   * Sets the number of threads for scoring chunks in parallel.
+   *
+   * @param value	the number of threads, 0 for number of cores
+   */
+  public void setNumThreads(int value) {
+    if (value >= 0)
+      m_NumThreads = value;
+  }
+
+  /**
+   * Returns the number of threads for scoring chunks in parallel.
+   *
+   * @return		the number of threads, 0 for number of cores
+   */
+  public int getNumThreads() {
+    return m_NumThreads;
+  }
+
+  /**
+   * Sets whether to output debugging information.
+   *
+   * @param value	true if to output debugging information
+   */
+  public void setDebug(boolean value) {
+    m_Debug = value;
+  }
+
+  /**
+   * Returns whether to output debugging information.
+   *
+   * @return		true if to output debugging information
+   */
+  public boolean getDebug() {
+    return m_Debug;
+  }
+
+  /**
+   * Determines the number of threads to use.
+   *
+   * @return		the number of threads
+   */
+  protected int determineNumThreads() {
+    if (m_NumThreads == 0)
+      return Runtime.getRuntime().availableProcessors();
+    return m_NumThreads;
+  }
+
+  /**
+   * Checks whether the data to score contains all the attributes that the
+   * classifier uses as features.
+   *
+   * @param classifier	the classifier in use
+   * @param structure	the structure of the data to score
+   * @throws IllegalArgumentException	if a feature attribute is missing
+   */
+  protected void checkStructure(AbstractDJLClassifier classifier, Instances structure) {
+    for (String name: classifier.getFeatureNames()) {
+      if (structure.attribute(name) == null)
+	throw new IllegalArgumentException("Attribute '" + name + "' used by the model is missing from: " + m_Input);
+    }
+  }
+
+  /**
+   * Writes the header of the CSV output.
+   *
+   * @param classifier	the classifier in use
+   * @param writer	the writer to use
+   * @throws IOException	if writing fails
+   */
+  protected void writeHeader(AbstractDJLClassifier classifier, Writer writer) throws IOException {
+    Attribute	cls;
+    int		i;
+
+    if (classifier instanceof DJLRegressor) {
+      writer.write(String.join(",", ((DJLRegressor) classifier).getTargetNames()));
+    }
+    else {
+      cls = classifier.getHeader().classAttribute();
+      writer.write("predicted");
+      for (i = 0; i < cls.numValues(); i++)
+	writer.write(",prob_" + cls.value(i));
+    }
+    writer.write("\n");
+  }
+
+  /**
+   * Writes the predictions of a chunk.
+   *
+   * @param classifier	the classifier in use
+   * @param outputs	the outputs of the network for the rows of the chunk
+   * @param writer	the writer to use
+   * @param line	the reusable buffer for assembling a line
+   * @return		the number of rows written
+   * @throws IOException	if writing fails
+   */
+  protected int writeOutputs(AbstractDJLClassifier classifier, List<float[]> outputs, Writer writer, StringBuilder line) throws IOException {
+    Attribute	cls;
+    double[]	values;
+    int		i;
+
+    cls = classifier.getHeader().classAttribute();
+    for (float[] output: outputs) {
+      line.setLength(0);
+      if (classifier instanceof DJLRegressor) {
+	values = ((DJLRegressor) classifier).toTargets(output);
+      }
+      else {
+	values = classifier.toDistribution(output);
+	line.append(cls.value(Utils.maxIndex(values)));
+      }
+      for (i = 0; i < values.length; i++) {
+	if ((i > 0) || cls.isNominal())
+	  line.append(",");
+	line.append(values[i]);
+      }
+      line.append("\n");
+      writer.append(line);
+    }
+
+    return outputs.size();
+  }
+
+  /**
+   * Scores the input file and writes the predictions to the output file.
+   *
+   * @return		the number of rows scored
+   * @throws Exception	if scoring fails
+   */
+  public long score() throws Exception {
+    final AbstractDJLClassifier	classifier;
+    int					threadsPerJob;
+    Deque<Future<List<float[]>>>	pending;
+    ExecutorService			executor;
+    DataSource				source;
+    Instances				structure;
+    Attribute				cls;
+    Instances				chunk;
+    StringBuilder			line;
+    int					numThreads;
+    long				numRows;
+    long				start;
+    double				seconds;
+
+    classifier = (AbstractDJLClassifier) SerializationHelper.read(m_Model.getAbsolutePath());
+    classifier.setBufferedPrediction(true);
+    DJLUtils.initClassLoader(classifier);
+    DJLUtils.registerPytorch();
+    classifier.initPrediction();
+
+    source    = new DataSource(m_Input.getAbsolutePath());
+    structure = source.getStructure();
+    cls       = structure.attribute(classifier.getHeader().classAttribute().name());
+    if (cls != null)
+      structure.setClass(cls);
+    checkStructure(classifier, structure);
+
+    numThreads    = determineNumThreads();
+    threadsPerJob = Math.max(1, Runtime.getRuntime().availableProcessors() / numThreads);
+    if (m_Debug)
+      System.err.println("Threads: " + numThreads + ", engine threads per chunk: " + threadsPerJob + ", chunk size: " + m_ChunkSize);
+
+    numRows  = 0;
+    start    = System.currentTimeMillis();
+    pending  = new ArrayDeque<>();
+    line     = new StringBuilder();
+    DJLUtils.limitPyTorchNumThreads(threadsPerJob);
+    executor = Executors.newFixedThreadPool(numThreads);
+    try (BufferedWriter writer = Files.newBufferedWriter(m_Output.toPath(), StandardCharsets.UTF_8)) {
+      writeHeader(classifier, writer);
+      chunk = new Instances(structure, m_ChunkSize);
+      while (source.hasMoreElements(structure)) {
+	chunk.add(source.nextElement(structure));
+	if (chunk.numInstances() == m_ChunkSize) {
+	  pending.add(submit(executor, classifier, chunk));
+	  chunk = new Instances(structure, m_ChunkSize);
+	  // limit the number of chunks in memory, keeping the input order
+	  while (pending.size() > 2 * numThreads)
+	    numRows += writeOutputs(classifier, pending.poll().get(), writer, line);
+	}
+      }
+      if (chunk.numInstances() > 0)
+	pending.add(submit(executor, classifier, chunk));
+      while (!pending.isEmpty())
+	numRows += writeOutputs(classifier, pending.poll().get(), writer, line);
+    }
+    finally {
+      executor.shutdownNow();
+      DJLUtils.releasePyTorchNumThreads();
+      classifier.close();
+    }
+
+    seconds = Math.max(0.001, (System.currentTimeMillis() - start) / 1000.0);
+    System.err.println("Scored " + numRows + " rows in " + Utils.doubleToString(seconds, 3) + "s (" + Utils.doubleToString(numRows / seconds, 1) + " rows/sec)");
+
+    return numRows;
+  }
+
+  /**
+   * Submits a chunk for scoring.
+   *
+   * @param executor		the executor to use
+   * @param classifier		the classifier to use
+   * @param chunk		the chunk to score
+   * @return			the future outputs
+   */
+  protected Future<List<float[]>> submit(ExecutorService executor, AbstractDJLClassifier classifier, Instances chunk) {
+    return executor.submit(() -> classifier.predictOutputs(chunk));
+  }
+
+  /**
+   * Scores a file from the command-line.
+   * <br>
+   * Options: -model file -input file -output file [-chunk-size rows] [-num-threads threads] [-D]
+   *
+   * @param args	the options
+   * @throws Exception	if scoring fails
+   */
+  public static void main(String[] args) throws Exception {
+    BulkScorer	scorer;
+    String	tmpStr;
+
+    scorer = new BulkScorer();
+
+    tmpStr = Utils.getOption("model", args);
+    if (tmpStr.isEmpty())
+      throw new IllegalArgumentException("No serialized model provided (-model)!");
+    scorer.setModel(new File(tmpStr));
+
+    tmpStr = Utils.getOption("input", args);
+    if (tmpStr.isEmpty())
+      throw new IllegalArgumentException("No file to score provided (-input)!");
+    scorer.setInput(new File(tmpStr));
+
+    tmpStr = Utils.getOption("output", args);
+    if (tmpStr.isEmpty())
+      throw new IllegalArgumentException("No output file provided (-output)!");
+    scorer.setOutput(new File(tmpStr));
+
+    tmpStr = Utils.getOption("chunk-size", args);
+    if (!tmpStr.isEmpty())
+      scorer.setChunkSize(Integer.parseInt(tmpStr));
+
+    tmpStr = Utils.getOption("num-threads", args);
+    if (!tmpStr.isEmpty())
+      scorer.setNumThreads(Integer.parseInt(tmpStr));
+
+    scorer.setDebug(Utils.getFlag('D', args));
+
+    scorer.score();
+  }
+}
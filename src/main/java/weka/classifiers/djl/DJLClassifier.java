@@ -0,0 +1,297 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * DJLClassifier.java
+ * Copyright (C) 2025 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.classifiers.djl;
+
+import ai.djl.ndarray.NDArray;
+import ai.djl.ndarray.types.DataType;
+import weka.classifiers.djl.trainingconfiggenerator.TabNetClassificationLossGenerator;
+import weka.classifiers.djl.trainingconfiggenerator.TrainingConfigGenerator;
+import weka.core.Capabilities;
+import weka.core.Capabilities.Capability;
+
+/**
+ <!-- globalinfo-start -->
+ * Uses Deep Java Library for building a classification model.<br>
+ * The output of the network gets turned into class probabilities via softmax.<br>
+ * The model can be updated incrementally: incoming instances get buffered and the network gets fine-tuned whenever a mini-batch is complete.
+ * <br><br>
+ <!-- globalinfo-end -->
+ *
+ <!-- options-start -->
+ * Valid options are: <p>
+ *
+ * <pre> -network &lt;classname + options&gt;
+ *  The network generator to use.
+ *  (default: weka.classifiers.djl.networkgenerator.TabNetGenerator)</pre>
+ *
+ * <pre> -train-percentage &lt;int&gt;
+ *  The percentage of the dataset to use for training (1-100).
+ *  The rest will get used for validation, 100 to train on all
+ *  the data without validation.
+ *  (default: 80)</pre>
+ *
+ * <pre> -split-strategy &lt;RANDOM|ORDERED|STRATIFIED&gt;
+ *  How to split the dataset into train/validation sets: random rows,
+ *  ordered (the last rows get used for validation, e.g., time series)
+ *  or stratified (by class label or 10 quantiles of a numeric class).
+ *  (default: RANDOM)</pre>
+ *
+ * <pre> -validation-interval &lt;int&gt;
+ *  The number of epochs after which to evaluate the validation set
+ *  (the last epoch always gets evaluated).
+ *  (default: 1)</pre>
+ *
+ * <pre> -mini-batch-size &lt;int&gt;
+ *  The size to use for the mini batches.
+ *  (default: 32)</pre>
+ *
+ * <pre> -num-epochs &lt;int&gt;
+ *  The number of epochs to use for training.
+ *  (default: 20)</pre>
+ *
+ * <pre> -id &lt;classname + options&gt;
+ *  The ID generator to use (ID = prefix of model).
+ *  (default: weka.classifiers.djl.idgenerator.FixedID)</pre>
+ *
+ * <pre> -output-dir &lt;classname + options&gt;
+ *  The output directory generator to use.
+ *  (default: weka.classifiers.djl.outputdirgenerator.FixedDir)</pre>
+ *
+ * <pre> -training-config &lt;classname + options&gt;
+ *  The training config generator to use.
+ *  (default: weka.classifiers.djl.trainingconfiggenerator.TabNetClassificationLossGenerator)</pre>
+ *
+ * <pre> -support-parallel-execution
+ *  Whether to enable support for parallel execution,
+ *  requires user to manually delete left-over model files (.params).
+ *  (default: disabled)</pre>
+ *
+ * <pre> -warm-start &lt;dir|id&gt;
+ *  The previously saved model to initialize the network parameters with,
+ *  in the format 'dir|id'. The dataset structure must be compatible.
+ *  (default: none)</pre>
+ *
+ * <pre> -inference-precision &lt;FLOAT32|FLOAT16|BFLOAT16&gt;
+ *  The precision to convert the network parameters to after training,
+ *  for smaller and faster models during inference.
+ *  (default: FLOAT32)</pre>
+ *
+ * <pre> -training-precision &lt;FLOAT32|BFLOAT16&gt;
+ *  The precision for the forward/backward passes during training, with
+ *  the parameters remaining in FLOAT32 (mixed precision).
+ *  FLOAT16 is not supported.
+ *  (default: FLOAT32)</pre>
+ *
+ * <pre> -fused-preprocessing
+ *  Whether to perform the normalization of numeric features and the
+ *  one-hot encoding of nominal ones within the network, using
+ *  statistics computed once on the training data.
+ *  (default: disabled)</pre>
+ *
+ * <pre> -sparse-storage
+ *  Whether to store the features in compressed sparse row format,
+ *  only visiting the non-zero values of the instances.
+ *  Requires fused preprocessing.
+ *  (default: disabled)</pre>
+ *
+ * <pre> -ensemble-size &lt;int&gt;
+ *  The number of networks in the ensemble, each trained on a bootstrap
+ *  sample of the training data; their outputs get averaged.
+ *  (default: 1)</pre>
+ *
+ * <pre> -ensemble-slots &lt;int&gt;
+ *  The number of ensemble members to train in parallel, 0 for number of cores.
+ *  (default: 1)</pre>
+ *
+ * <pre> -num-replicas &lt;int&gt;
+ *  The number of replicas to train in parallel threads on disjoint shards
+ *  of the training data, averaging their parameters periodically, 1 to disable.
+ *  (default: 1)</pre>
+ *
+ * <pre> -averaging-interval &lt;int&gt;
+ *  The number of epochs after which to average the parameters of the replicas.
+ *  (default: 1)</pre>
+ *
+ * <pre> -num-workers &lt;int&gt;
+ *  The number of additional worker processes for data-parallel training,
+ *  synchronizing the gradients after each mini-batch, 0 for single process.
+ *  Requires fused preprocessing.
+ *  (default: 0)</pre>
+ *
+ * <pre> -worker-port &lt;int&gt;
+ *  The port that the workers connect to, 0 for any free port.
+ *  (default: 0)</pre>
+ *
+ * <pre> -remote-workers
+ *  Whether the workers get started manually (e.g., on other machines,
+ *  via weka.classifiers.djl.DistributedWorker) instead of locally.
+ *  (default: disabled)</pre>
+ *
+ * <pre> -worker-timeout &lt;int&gt;
+ *  The number of seconds to wait for the workers to connect or respond.
+ *  (default: 600)</pre>
+ *
+ * <pre> -missing-indicators
+ *  Whether to add indicator columns for features with missing values
+ *  in the training data (otherwise missing values only get imputed).
+ *  Requires fused preprocessing.
+ *  (default: disabled)</pre>
+ *
+ * <pre> -embedding-threshold &lt;int&gt;
+ *  The number of labels above which nominal features get mapped onto
+ *  a learned embedding instead of getting one-hot encoded, 0 to disable.
+ *  Requires fused preprocessing.
+ *  (default: 0)</pre>
+ *
+ * <pre> -embedding-size &lt;int&gt;
+ *  The size of the learned embeddings, 0 for half the number of labels
+ *  (capped at 50).
+ *  (default: 0)</pre>
+ *
+ * <pre> -share-datasets
+ *  Whether to share the prepared (featurized) training data with
+ *  other classifiers in this process that train on the same data
+ *  using the same dataset structure.
+ *  (default: disabled)</pre>
+ *
+ * <pre> -buffered-prediction
+ *  Whether to make batch predictions with pre-allocated input tensors
+ *  of the batch size (tail batch gets padded), using a pool of
+ *  predictors for concurrent predictions.
+ *  (default: disabled)</pre>
+ *
+ * <pre> -S &lt;num&gt;
+ *  Random number seed.
+ *  (default 1)</pre>
+ *
+ * <pre> -output-debug-info
+ *  If set, classifier is run in debug mode and
+ *  may output additional info to the console</pre>
+ *
+ * <pre> -do-not-check-capabilities
+ *  If set, classifier capabilities are not checked before classifier is built
+ *  (use with caution).</pre>
+ *
+ * <pre> -num-decimal-places
+ *  The number of decimal places for the output of numbers in the model (default 2).</pre>
+ *
+ * <pre> -batch-size
+ *  The desired batch size for batch prediction  (default 100).</pre>
+ *
+ <!-- options-end -->
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class DJLClassifier
+  extends AbstractDJLClassifier {
+
+  private static final long serialVersionUID = 7215930567412386044L;
+
+  /**
+   * Returns a string describing the object.
+   *
+   * @return a description suitable for displaying in the gui
+   */
+  public String globalInfo() {
+    return "Uses Deep Java Library for building a classification model.\n"
+	     + "The output of the network gets turned into class probabilities via softmax.\n"
+	     + "The model can be updated incrementally: incoming instances get buffered "
+	     + "and the network gets fine-tuned whenever a mini-batch is complete.";
+  }
+
+  /**
+   * Returns the default training config generator.
+   *
+   * @return		the default
+   */
+  @Override
+  protected TrainingConfigGenerator getDefaultTrainingConfig() {
+    return new TabNetClassificationLossGenerator();
+  }
+
+  /**
+   * Returns whether the network output gets turned into probabilities via
+   * softmax, i.e., whether the model is a classification one.
+   *
+   * @return		always true
+   */
+  @Override
+  protected boolean hasSoftmaxOutput() {
+    return true;
+  }
+
+  /**
+   * Returns the Capabilities of this classifier.
+   *
+   * @return the capabilities of this object
+   * @see Capabilities
+   */
+  @Override
+  public Capabilities getCapabilities() {
+    Capabilities result = super.getCapabilities();
+    result.enable(Capability.NOMINAL_CLASS);
+    return result;
+  }
+
+  /**
+   * Computes the number of misclassified rows in the batch.
+   *
+   * @param output	the output of the network (batch x classes)
+   * @param labels	the stored labels, i.e., class indices (batch x 1)
+   * @return		the number of misclassified rows
+   */
+  @Override
+  protected double computeBatchError(NDArray output, NDArray labels) {
+    return output.argMax(1).toType(DataType.FLOAT32, false).neq(labels.reshape(-1)).sum().toType(DataType.FLOAT32, false).getFloat();
+  }
+
+  /**
+   * Turns the number of misclassified rows into the error rate.
+   *
+   * @param sum		the number of misclassified rows
+   * @param count	the number of rows
+   * @return		the error rate
+   */
+  @Override
+  protected double finalizeError(double sum, long count) {
+    return sum / count;
+  }
+
+  /**
+   * Returns the name of the error measure.
+   *
+   * @return		the name
+   */
+  @Override
+  protected String getErrorName() {
+    return "error rate";
+  }
+
+  /**
+   * Runs the classifier from the command-line with the specified options.
+   *
+   * @param args	the options for the classifier
+   * @throws Exception	if execution fails
+   */
+  public static void main(String[] args) throws Exception {
+    runClassifier(new DJLClassifier(), args);
+  }
+}
@@ -0,0 +1,385 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * DJLCrossValidation.java
+ * Copyright (C) 2025 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.classifiers.djl;
+
+import ai.djl.Model;
+import ai.djl.training.dataset.RandomAccessDataset;
+import weka.classifiers.AbstractClassifier;
+import weka.classifiers.Classifier;
+import weka.classifiers.Evaluation;
+import weka.classifiers.djl.dataset.IndexedDataset;
+import weka.classifiers.djl.dataset.InstancesDataset;
+import weka.classifiers.djl.dataset.InstancesDatasetCache;
+import weka.core.Instances;
+import weka.core.Utils;
+import weka.core.converters.ConverterUtils.DataSource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Cross-validates a DJL classifier/regressor (derived from
+ * {@link AbstractDJLClassifier}) without the overhead of Weka's
+ * generic cross-validation: the data gets featurized only once, the folds
+ * are merely index views on the featurized data, the folds get trained in
+ * parallel (each using its own native model and its share of the available
+ * threads) and are evaluated using batched predictions. No .params files get
+ * written.
+ * <br>
+ * Like with Weka's cross-validation, the statistics of the preprocessing
+ * (normalization, imputation values, missing value indicators) only get
+ * computed on the training rows of each fold. With fused preprocessing (or
+ * without missing values), the featurized rows do not depend on these
+ * statistics and get shared across the folds, otherwise they get featurized
+ * again per fold. Each fold splits off its validation set according to the
+ * split strategy of the classifier and applies its inference precision.
+ * <br>
+ * Please note that the class priors get determined from the full dataset.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class DJLCrossValidation {
+
+  /** the number of folds. */
+  protected int m_NumFolds = 10;
+
+  /** the seed for generating the folds. */
+  protected int m_Seed = 1;
+
+  /** the number of execution slots (0 = number of cores). */
+  protected int m_NumExecutionSlots = 1;
+
+  /** whether to output debugging information. */
+  protected boolean m_Debug = false;
+
+  /**
+   * Sets the number of folds.
+   *
+   * @param value	the folds
+   */
+  public void setNumFolds(int value) {
+    if (value >= 2)
+      m_NumFolds = value;
+  }
+
+  /**
+   * Returns the number of folds.
+   *
+   * @return		the folds
+   */
+  public int getNumFolds() {
+    return m_NumFolds;
+  }
+
+  /**
+   * Sets the seed for generating the folds.
+   *
+   * @param value	the seed
+   */
+  public void setSeed(int value) {
+    m_Seed = value;
+  }
+
+  /**
+   * Returns the seed for generating the folds.
+   *
+   * @return		the seed
+   */
+  public int getSeed() {
+    return m_Seed;
+  }
+
+  /**
+   * Sets the number of execution slots, i.e., how many folds to train in parallel.
+   *
+   * @param value	the number of slots, 0 for number of cores
+   */
+  public void setNumExecutionSlots(int value) {
+    if (value >= 0)
+      m_NumExecutionSlots = value;
+  }
+
+  /**
+   * Returns the number of execution slots, i.e., how many folds to train in parallel.
+   *
+   * @return		the number of slots, 0 for number of cores
+   */
+  public int getNumExecutionSlots() {
+    return m_NumExecutionSlots;
+  }
+
+  /**
+   * Sets whether to output debugging information.
+   *
+   * @param value	true if to output debugging information
+   */
+  public void setDebug(boolean value) {
+    m_Debug = value;
+  }
+
+  /**
+   * Returns whether to output debugging information.
+   *
+   * @return		true if to output debugging information
+   */
+  public boolean getDebug() {
+    return m_Debug;
+  }
+
+  /**
+   * Determines the number of folds to train in parallel.
+   *
+   * @return		the number of parallel folds
+   */
+  protected int determineNumSlots() {
+    int		result;
+
+    result = m_NumExecutionSlots;
+    if (result == 0)
+      result = Runtime.getRuntime().availableProcessors();
+
+    return Math.max(1, Math.min(result, m_NumFolds));
+  }
+
+  /**
+   * Generates the row indices of the folds.
+   *
+   * @param numRows	the number of rows in the data
+   * @return		the row indices per fold
+   */
+  protected List<List<Long>> generateFolds(int numRows) {
+    List<List<Long>>	result;
+    List<Long>		rows;
+    int			i;
+
+    rows = new ArrayList<>();
+    for (i = 0; i < numRows; i++)
+      rows.add((long) i);
+    Collections.shuffle(rows, new Random(m_Seed));
+
+    result = new ArrayList<>();
+    for (i = 0; i < m_NumFolds; i++)
+      result.add(new ArrayList<>());
+    for (i = 0; i < numRows; i++)
+      result.get(i % m_NumFolds).add(rows.get(i));
+
+    return result;
+  }
+
+  /**
+   * Creates the dataset for the fold: the statistics of the preprocessing
+   * (normalization, imputation, missing value indicators) only get computed
+   * on the training rows of the fold. The featurized rows get shared with
+   * the full dataset where possible (see {@link InstancesDataset#withStatistics}).
+   *
+   * @param classifier	the (copy of the) classifier to use for the fold
+   * @param dataset	the full dataset
+   * @param rows	the training rows of the fold
+   * @return		the prepared dataset for the fold
+   * @throws Exception	if creating the dataset fails
+   */
+  protected InstancesDataset newFoldDataset(AbstractDJLClassifier classifier, InstancesDataset dataset, int[] rows) throws Exception {
+    InstancesDataset	result;
+    Instances		train;
+
+    train = new Instances(dataset.getData(), rows.length);
+    for (int row: rows)
+      train.add(dataset.getData().instance(row));
+
+    result = dataset.withStatistics(classifier.newBuilder(train).build().toJson(), classifier.getMiniBatchSize());
+    result.prepare();
+
+    return result;
+  }
+
+  /**
+   * Trains and evaluates the specified fold. The training rows get split
+   * into train/validation sets and the trained model gets converted to the
+   * inference precision the same way as when building the classifier.
+   *
+   * @param classifier	the (copy of the) classifier to use for the fold
+   * @param dataset	the prepared dataset
+   * @param folds	the row indices per fold
+   * @param fold	the fold to evaluate
+   * @return		the predictions for the rows of the fold
+   * @throws Exception	if training/evaluation fails
+   */
+  protected float[][] evaluateFold(AbstractDJLClassifier classifier, InstancesDataset dataset, List<List<Long>> folds, int fold) throws Exception {
+    List<Long>		train;
+    int[]		rows;
+    InstancesDataset	foldDataset;
+    IndexedDataset[]	split;
+    RandomAccessDataset	validate;
+    int			i;
+
+    train = new ArrayList<>();
+    for (i = 0; i < folds.size(); i++) {
+      if (i != fold)
+	train.addAll(folds.get(i));
+    }
+    rows = classifier.toRows(train);
+    Arrays.sort(rows);
+
+    foldDataset = newFoldDataset(classifier, dataset, rows);
+    split       = classifier.splitDataset(foldDataset, rows);
+    validate    = (split[1].size() > 0) ? split[1] : null;
+
+    if (m_Debug)
+      System.out.println("Fold " + (fold + 1) + ": train=" + split[0].size() + ", validate=" + split[1].size() + ", test=" + folds.get(fold).size());
+
+    try (Model model = Model.newInstance("cv-fold-" + fold)) {
+      model.setBlock(classifier.generateNetwork(foldDataset));
+      classifier.train(model, foldDataset, split[0], validate);
+      if (classifier.getInferencePrecision() != Precision.FLOAT32)
+	classifier.applyInferencePrecision(model, foldDataset, validate);
+      return classifier.predict(model, foldDataset, folds.get(fold));
+    }
+  }
+
+  /**
+   * Cross-validates the classifier on the data.
+   *
+   * @param classifier	the classifier to evaluate
+   * @param data	the data to use
+   * @return		the evaluation
+   * @throws Exception	if evaluation fails
+   */
+  public Evaluation crossValidate(AbstractDJLClassifier classifier, Instances data) throws Exception {
+    final InstancesDataset	dataset;
+    final List<List<Long>>	folds;
+    final Classifier[]		copies;
+    int				numThreads;
+    int				numSlots;
+    ExecutorService		executor;
+    List<Future<float[][]>>	jobs;
+    Evaluation			result;
+    List<Long>			rows;
+    float[][]			preds;
+    int				i;
+    int				n;
+
+    classifier.getCapabilities().test(data);
+    data = classifier.removeMissingTargets(data);
+
+    if (data.numInstances() < m_NumFolds)
+      throw new IllegalArgumentException("Fewer instances than folds: " + data.numInstances() + " < " + m_NumFolds);
+
+    DJLUtils.initClassLoader(classifier);
+    DJLUtils.registerPytorch();
+    DJLUtils.setPyTorchSeed(classifier.getSeed());
+
+    dataset    = classifier.newDataset(data);
+    folds      = generateFolds(data.numInstances());
+    copies     = AbstractClassifier.makeCopies(classifier, m_NumFolds);
+    numSlots   = determineNumSlots();
+    numThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / numSlots);
+
+    if (m_Debug)
+      System.out.println("Folds: " + m_NumFolds + ", parallel folds: " + numSlots + ", threads per fold: " + numThreads);
+
+    DJLUtils.limitPyTorchNumThreads(numThreads);
+    executor = Executors.newFixedThreadPool(numSlots);
+    try {
+      jobs = new ArrayList<>();
+      for (i = 0; i < m_NumFolds; i++) {
+	final int fold = i;
+	jobs.add(executor.submit(() -> evaluateFold((AbstractDJLClassifier) copies[fold], dataset, folds, fold)));
+      }
+
+      result = new Evaluation(data);
+      for (i = 0; i < m_NumFolds; i++) {
+	rows  = folds.get(i);
+	preds = jobs.get(i).get();
+	for (n = 0; n < rows.size(); n++)
+	  result.evaluateModelOnceAndRecordPrediction(classifier.toDistribution(preds[n]), data.instance(rows.get(n).intValue()));
+      }
+    }
+    finally {
+      executor.shutdownNow();
+      DJLUtils.releasePyTorchNumThreads();
+      InstancesDatasetCache.release(dataset);
+    }
+
+    return result;
+  }
+
+  /**
+   * Cross-validates a DJL classifier/regressor from the command-line
+   * ({@link DJLRegressor} by default).
+   * <br>
+   * Options: -t dataset [-c class-index] [-x folds] [-s seed] [-num-slots slots] [-D] [-W classname] [classifier options]
+   *
+   * @param args	the options
+   * @throws Exception	if evaluation fails
+   */
+  public static void main(String[] args) throws Exception {
+    DJLCrossValidation	cv;
+    AbstractDJLClassifier	classifier;
+    Instances		data;
+    String		tmpStr;
+    Evaluation		eval;
+
+    cv = new DJLCrossValidation();
+
+    tmpStr = Utils.getOption('t', args);
+    if (tmpStr.isEmpty())
+      throw new IllegalArgumentException("No dataset provided (-t)!");
+    data = DataSource.read(tmpStr);
+
+    tmpStr = Utils.getOption('c', args);
+    if (tmpStr.isEmpty() || tmpStr.equals("last"))
+      data.setClassIndex(data.numAttributes() - 1);
+    else if (tmpStr.equals("first"))
+      data.setClassIndex(0);
+    else
+      data.setClassIndex(Integer.parseInt(tmpStr) - 1);
+
+    tmpStr = Utils.getOption('x', args);
+    if (!tmpStr.isEmpty())
+      cv.setNumFolds(Integer.parseInt(tmpStr));
+
+    tmpStr = Utils.getOption('s', args);
+    if (!tmpStr.isEmpty())
+      cv.setSeed(Integer.parseInt(tmpStr));
+
+    tmpStr = Utils.getOption("num-slots", args);
+    if (!tmpStr.isEmpty())
+      cv.setNumExecutionSlots(Integer.parseInt(tmpStr));
+
+    cv.setDebug(Utils.getFlag('D', args));
+
+    tmpStr = Utils.getOption('W', args);
+    if (tmpStr.isEmpty())
+      classifier = new DJLRegressor();
+    else
+      classifier = (AbstractDJLClassifier) Utils.forName(AbstractDJLClassifier.class, tmpStr, null);
+    classifier.setOptions(args);
+
+    eval = cv.crossValidate(classifier, data);
+    System.out.println(eval.toSummaryString("=== " + cv.getNumFolds() + "-fold cross-validation ===\n", false));
+  }
+}
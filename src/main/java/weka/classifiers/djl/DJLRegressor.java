@@ -20,24 +20,8 @@
 
 package weka.classifiers.djl;
 
-import ai.djl.Model;
-import ai.djl.basicdataset.tabular.ListFeatures;
-import ai.djl.inference.Predictor;
-import ai.djl.ndarray.types.Shape;
-import ai.djl.repository.zoo.ZooModel;
-import ai.djl.training.EasyTrain;
-import ai.djl.training.Trainer;
-import ai.djl.training.TrainingConfig;
-import ai.djl.training.dataset.Dataset;
-import ai.djl.translate.Translator;
-import weka.classifiers.RandomizableClassifier;
+import ai.djl.ndarray.NDArray;
 import weka.classifiers.djl.dataset.InstancesDataset;
-import weka.classifiers.djl.idgenerator.FixedID;
-import weka.classifiers.djl.idgenerator.IDGenerator;
-import weka.classifiers.djl.networkgenerator.NetworkGenerator;
-import weka.classifiers.djl.networkgenerator.TabNetGenerator;
-import weka.classifiers.djl.outputdirgenerator.FixedDir;
-import weka.classifiers.djl.outputdirgenerator.OutputDirGenerator;
 import weka.classifiers.djl.trainingconfiggenerator.TabNetRegressionLossGenerator;
 import weka.classifiers.djl.trainingconfiggenerator.TrainingConfigGenerator;
 import weka.core.Capabilities;
@@ -45,23 +29,19 @@ import weka.core.Capabilities.Capability;
 import weka.core.Instance;
 import weka.core.Instances;
 import weka.core.Option;
-import weka.core.UniqueIDs;
 import weka.core.Utils;
 
-import java.io.Closeable;
-import java.io.File;
-import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Enumeration;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Vector;
 
 /**
  <!-- globalinfo-start -->
- * Uses Deep Java Library for building a regression model.
+ * Uses Deep Java Library for building a regression model.<br>
+ * The model can be updated incrementally: incoming instances get buffered and the network gets fine-tuned whenever a mini-batch is complete.<br>
+ * Further numeric attributes can be predicted alongside the class attribute by the same network (multi-target regression).
  * <br><br>
  <!-- globalinfo-end -->
  *
@@ -73,10 +53,22 @@ import java.util.Vector;
  *  (default: weka.classifiers.djl.networkgenerator.TabNetGenerator)</pre>
  *
  * <pre> -train-percentage &lt;int&gt;
- *  The percentage of the dataset to use for training (1-99).
- *  The rest will get used for validation.
+ *  The percentage of the dataset to use for training (1-100).
+ *  The rest will get used for validation, 100 to train on all
+ *  the data without validation.
  *  (default: 80)</pre>
  *
+ * <pre> -split-strategy &lt;RANDOM|ORDERED|STRATIFIED&gt;
+ *  How to split the dataset into train/validation sets: random rows,
+ *  ordered (the last rows get used for validation, e.g., time series)
+ *  or stratified (by class label or 10 quantiles of a numeric class).
+ *  (default: RANDOM)</pre>
+ *
+ * <pre> -validation-interval &lt;int&gt;
+ *  The number of epochs after which to evaluate the validation set
+ *  (the last epoch always gets evaluated).
+ *  (default: 1)</pre>
+ *
  * <pre> -mini-batch-size &lt;int&gt;
  *  The size to use for the mini batches.
  *  (default: 32)</pre>
@@ -102,6 +94,100 @@ import java.util.Vector;
  *  requires user to manually delete left-over model files (.params).
  *  (default: disabled)</pre>
  *
+ * <pre> -warm-start &lt;dir|id&gt;
+ *  The previously saved model to initialize the network parameters with,
+ *  in the format 'dir|id'. The dataset structure must be compatible.
+ *  (default: none)</pre>
+ *
+ * <pre> -inference-precision &lt;FLOAT32|FLOAT16|BFLOAT16&gt;
+ *  The precision to convert the network parameters to after training,
+ *  for smaller and faster models during inference.
+ *  (default: FLOAT32)</pre>
+ *
+ * <pre> -training-precision &lt;FLOAT32|BFLOAT16&gt;
+ *  The precision for the forward/backward passes during training, with
+ *  the parameters remaining in FLOAT32 (mixed precision).
+ *  FLOAT16 is not supported.
+ *  (default: FLOAT32)</pre>
+ *
+ * <pre> -fused-preprocessing
+ *  Whether to perform the normalization of numeric features and the
+ *  one-hot encoding of nominal ones within the network, using
+ *  statistics computed once on the training data.
+ *  (default: disabled)</pre>
+ *
+ * <pre> -sparse-storage
+ *  Whether to store the features in compressed sparse row format,
+ *  only visiting the non-zero values of the instances.
+ *  Requires fused preprocessing.
+ *  (default: disabled)</pre>
+ *
+ * <pre> -ensemble-size &lt;int&gt;
+ *  The number of networks in the ensemble, each trained on a bootstrap
+ *  sample of the training data; their outputs get averaged.
+ *  (default: 1)</pre>
+ *
+ * <pre> -ensemble-slots &lt;int&gt;
+ *  The number of ensemble members to train in parallel, 0 for number of cores.
+ *  (default: 1)</pre>
+ *
+ * <pre> -num-replicas &lt;int&gt;
+ *  The number of replicas to train in parallel threads on disjoint shards
+ *  of the training data, averaging their parameters periodically, 1 to disable.
+ *  (default: 1)</pre>
+ *
+ * <pre> -averaging-interval &lt;int&gt;
+ *  The number of epochs after which to average the parameters of the replicas.
+ *  (default: 1)</pre>
+ *
+ * <pre> -num-workers &lt;int&gt;
+ *  The number of additional worker processes for data-parallel training,
+ *  synchronizing the gradients after each mini-batch, 0 for single process.
+ *  Requires fused preprocessing.
+ *  (default: 0)</pre>
+ *
+ * <pre> -worker-port &lt;int&gt;
+ *  The port that the workers connect to, 0 for any free port.
+ *  (default: 0)</pre>
+ *
+ * <pre> -remote-workers
+ *  Whether the workers get started manually (e.g., on other machines,
+ *  via weka.classifiers.djl.DistributedWorker) instead of locally.
+ *  (default: disabled)</pre>
+ *
+ * <pre> -worker-timeout &lt;int&gt;
+ *  The number of seconds to wait for the workers to connect or respond.
+ *  (default: 600)</pre>
+ *
+ * <pre> -missing-indicators
+ *  Whether to add indicator columns for features with missing values
+ *  in the training data (otherwise missing values only get imputed).
+ *  Requires fused preprocessing.
+ *  (default: disabled)</pre>
+ *
+ * <pre> -embedding-threshold &lt;int&gt;
+ *  The number of labels above which nominal features get mapped onto
+ *  a learned embedding instead of getting one-hot encoded, 0 to disable.
+ *  Requires fused preprocessing.
+ *  (default: 0)</pre>
+ *
+ * <pre> -embedding-size &lt;int&gt;
+ *  The size of the learned embeddings, 0 for half the number of labels
+ *  (capped at 50).
+ *  (default: 0)</pre>
+ *
+ * <pre> -share-datasets
+ *  Whether to share the prepared (featurized) training data with
+ *  other classifiers in this process that train on the same data
+ *  using the same dataset structure.
+ *  (default: disabled)</pre>
+ *
+ * <pre> -buffered-prediction
+ *  Whether to make batch predictions with pre-allocated input tensors
+ *  of the batch size (tail batch gets padded), using a pool of
+ *  predictors for concurrent predictions.
+ *  (default: disabled)</pre>
+ *
  * <pre> -S &lt;num&gt;
  *  Random number seed.
  *  (default 1)</pre>
@@ -120,60 +206,23 @@ import java.util.Vector;
  * <pre> -batch-size
  *  The desired batch size for batch prediction  (default 100).</pre>
  *
+ * <pre> -additional-targets &lt;regexp&gt;
+ *  The regular expression for the names of the numeric attributes
+ *  to predict alongside the class attribute (multi-target regression).
+ *  These attributes no longer get used as features.
+ *  (default: none)</pre>
+ *
  <!-- options-end -->
  *
  * @author fracpete (fracpete at waikato dot ac dot nz)
  */
 public class DJLRegressor
-  extends RandomizableClassifier
-  implements AutoCloseable {
-
-  private static final long serialVersionUID = -8361229968357782660L;
+  extends AbstractDJLClassifier {
 
-  /** for keeping track of models. */
-  protected static Map<String,Model> m_Models = new HashMap<>();
+  private static final long serialVersionUID = 4527091846351873901L;
 
-  /** the network generator to use. */
-  protected NetworkGenerator m_Network = new TabNetGenerator();
-
-  /** the percentage for the network's training set. */
-  protected int m_TrainPercentage = 80;
-
-  /** the batchsize. */
-  protected int m_MiniBatchSize = 32;
-
-  /** the number of epochs to train. */
-  protected int m_NumEpochs = 20;
-
-  /** the model ID/prefix generator. */
-  protected IDGenerator m_ID = new FixedID();
-
-  /** the output dir generator. */
-  protected OutputDirGenerator m_OutputDir = new FixedDir();
-
-  /** the training config generator. */
-  protected TrainingConfigGenerator m_TrainingConfig = new TabNetRegressionLossGenerator();
-
-  /** whether to support parallel execution. */
-  protected boolean m_SupportParallelExecution = false;
-
-  /** the header. */
-  protected Instances m_Header;
-
-  /** the DJL dataset. */
-  protected transient InstancesDataset m_Dataset;
-
-  /** the feature translator to use. */
-  protected transient Translator<ListFeatures, Float> m_Translator;
-
-  /** the model. */
-  protected transient Model m_Model;
-
-  /** the predictor to use. */
-  protected transient Predictor<ListFeatures, Float> m_Predictor;
-
-  /** the dataset config. */
-  protected String m_DatasetConfig;
+  /** the regular expression for the additional targets (empty = none). */
+  protected String m_AdditionalTargets = "";
 
   /**
    * Returns a string describing the object.
@@ -181,7 +230,11 @@ public class DJLRegressor
    * @return a description suitable for displaying in the gui
    */
   public String globalInfo() {
-    return "Uses Deep Java Library for building a regression model.";
+    return "Uses Deep Java Library for building a regression model.\n"
+	     + "The model can be updated incrementally: incoming instances get buffered "
+	     + "and the network gets fine-tuned whenever a mini-batch is complete.\n"
+	     + "Further numeric attributes can be predicted alongside the class attribute "
+	     + "by the same network (multi-target regression).";
   }
 
   /**
@@ -196,52 +249,17 @@ public class DJLRegressor
 
     result = new Vector<>();
 
-    result.add(new Option(
-      "\tThe network generator to use.\n"
-	+ "\t(default: " + TabNetGenerator.class.getName() + ")",
-      "network", 1, "-network <classname + options>"));
-
-    result.add(new Option(
-      "\tThe percentage of the dataset to use for training (1-99).\n"
-	+ "\tThe rest will get used for validation.\n"
-	+ "\t(default: 80)",
-      "train-percentage", 1, "-train-percentage <int>"));
-
-    result.add(new Option(
-      "\tThe size to use for the mini batches.\n"
-	+ "\t(default: 32)",
-      "mini-batch-size", 1, "-mini-batch-size <int>"));
-
-    result.add(new Option(
-      "\tThe number of epochs to use for training.\n"
-	+ "\t(default: 20)",
-      "num-epochs", 1, "-num-epochs <int>"));
-
-    result.add(new Option(
-      "\tThe ID generator to use (ID = prefix of model).\n"
-	+ "\t(default: " + FixedID.class.getName() + ")",
-      "id", 1, "-id <classname + options>"));
-
-    result.add(new Option(
-      "\tThe output directory generator to use.\n"
-	+ "\t(default: " + FixedDir.class.getName() + ")",
-      "output-dir", 1, "-output-dir <classname + options>"));
-
-    result.add(new Option(
-      "\tThe training config generator to use.\n"
-	+ "\t(default: " + TabNetRegressionLossGenerator.class.getName() + ")",
-      "training-config", 1, "-training-config <classname + options>"));
-
-    result.add(new Option(
-      "\tWhether to enable support for parallel execution, \n"
-	+ "\trequires user to manually delete left-over model files (.params).\n"
-	+ "\t(default: disabled)",
-      "support-parallel-execution", 0, "-support-parallel-execution"));
-
     enm = super.listOptions();
     while (enm.hasMoreElements())
       result.add(enm.nextElement());
 
+    result.add(new Option(
+      "\tThe regular expression for the names of the numeric attributes\n"
+	+ "\tto predict alongside the class attribute (multi-target regression).\n"
+	+ "\tThese attributes no longer get used as features.\n"
+	+ "\t(default: none)",
+      "additional-targets", 1, "-additional-targets <regexp>"));
+
     return result.elements();
   }
 
@@ -255,73 +273,7 @@ public class DJLRegressor
    */
   @Override
   public void setOptions(String[] options) throws Exception {
-    String	tmpStr;
-    String[]	tmpOpts;
-
-    tmpStr = Utils.getOption("network", options);
-    if (tmpStr.isEmpty()) {
-      setNetwork(new TabNetGenerator());
-    }
-    else {
-      tmpOpts    = Utils.splitOptions(tmpStr);
-      tmpStr     = tmpOpts[0];
-      tmpOpts[0] = "";
-      setNetwork((NetworkGenerator) Utils.forName(NetworkGenerator.class, tmpStr, tmpOpts));
-    }
-
-    tmpStr = Utils.getOption("train-percentage", options);
-    if (tmpStr.isEmpty())
-      setTrainPercentage(80);
-    else
-      setTrainPercentage(Integer.parseInt(tmpStr));
-
-    tmpStr = Utils.getOption("mini-batch-size", options);
-    if (tmpStr.isEmpty())
-      setMiniBatchSize(32);
-    else
-      setMiniBatchSize(Integer.parseInt(tmpStr));
-
-    tmpStr = Utils.getOption("num-epochs", options);
-    if (tmpStr.isEmpty())
-      setNumEpochs(20);
-    else
-      setNumEpochs(Integer.parseInt(tmpStr));
-
-    tmpStr = Utils.getOption("id", options);
-    if (tmpStr.isEmpty()) {
-      setID(new FixedID());
-    }
-    else {
-      tmpOpts    = Utils.splitOptions(tmpStr);
-      tmpStr     = tmpOpts[0];
-      tmpOpts[0] = "";
-      setID((IDGenerator) Utils.forName(IDGenerator.class, tmpStr, tmpOpts));
-    }
-
-    tmpStr = Utils.getOption("output-dir", options);
-    if (tmpStr.isEmpty()) {
-      setOutputDir(new FixedDir());
-    }
-    else {
-      tmpOpts    = Utils.splitOptions(tmpStr);
-      tmpStr     = tmpOpts[0];
-      tmpOpts[0] = "";
-      setOutputDir((OutputDirGenerator) Utils.forName(OutputDirGenerator.class, tmpStr, tmpOpts));
-    }
-
-    tmpStr = Utils.getOption("training-config", options);
-    if (tmpStr.isEmpty()) {
-      setTrainingConfig(new TabNetRegressionLossGenerator());
-    }
-    else {
-      tmpOpts    = Utils.splitOptions(tmpStr);
-      tmpStr     = tmpOpts[0];
-      tmpOpts[0] = "";
-      setTrainingConfig((TrainingConfigGenerator) Utils.forName(TrainingConfigGenerator.class, tmpStr, tmpOpts));
-    }
-
-    setSupportParallelExecution(Utils.getFlag("support-parallel-execution", options));
-
+    setAdditionalTargets(Utils.getOption("additional-targets", options));
     super.setOptions(options);
   }
 
@@ -334,82 +286,32 @@ public class DJLRegressor
   public String[] getOptions() {
     List<String> 	result;
 
-    result = new ArrayList<>();
-
-    result.add("-network");
-    result.add(Utils.toCommandLine(getNetwork()));
-
-    result.add("-train-percentage");
-    result.add("" + getTrainPercentage());
-
-    result.add("-mini-batch-size");
-    result.add("" + getMiniBatchSize());
-
-    result.add("-num-epochs");
-    result.add("" + getNumEpochs());
+    result = new ArrayList<>(Arrays.asList(super.getOptions()));
 
-    result.add("-id");
-    result.add(Utils.toCommandLine(getID()));
-
-    result.add("-output-dir");
-    result.add(Utils.toCommandLine(getOutputDir()));
-
-    result.add("-training-config");
-    result.add(Utils.toCommandLine(getTrainingConfig()));
-
-    if (getSupportParallelExecution())
-      result.add("-support-parallel-execution");
-
-    result.addAll(Arrays.asList(super.getOptions()));
+    if (!getAdditionalTargets().isEmpty()) {
+      result.add("-additional-targets");
+      result.add(getAdditionalTargets());
+    }
 
     return result.toArray(new String[0]);
   }
 
   /**
-   * Sets the network generator to use.
-   *
-   * @param value 	the generator
-   */
-  public void setNetwork(NetworkGenerator value) {
-    m_Network = value;
-  }
-
-  /**
-   * Gets the network generator to use.
-   *
-   * @return 		the generator
-   */
-  public NetworkGenerator getNetwork() {
-    return m_Network;
-  }
-
-  /**
-   * Returns the tip text for this property.
-   *
-   * @return		tip text for this property suitable for
-   * 			displaying in the explorer/experimenter gui
-   */
-  public String networkTipText() {
-    return "The generator to create the network structure with.";
-  }
-
-  /**
-   * Sets the percentage to use for the internal training set.
+   * Sets the regular expression for the additional targets.
    *
-   * @param value 	the percentage
+   * @param value 	the expression, empty for none
    */
-  public void setTrainPercentage(int value) {
-    if ((value > 0) && (value < 100))
-      m_TrainPercentage = value;
+  public void setAdditionalTargets(String value) {
+    m_AdditionalTargets = value;
   }
 
   /**
-   * Gets the percentage to use for the internal training set.
+   * Gets the regular expression for the additional targets.
    *
-   * @return 		the percentage
+   * @return 		the expression, empty for none
    */
-  public int getTrainPercentage() {
-    return m_TrainPercentage;
+  public String getAdditionalTargets() {
+    return m_AdditionalTargets;
   }
 
   /**
@@ -418,374 +320,205 @@ public class DJLRegressor
    * @return		tip text for this property suitable for
    * 			displaying in the explorer/experimenter gui
    */
-  public String trainPercentageTipText() {
-    return "The percentage to use for splitting the data into internal train/validation sets.";
+  public String additionalTargetsTipText() {
+    return "The regular expression for the names of the numeric attributes to predict alongside the class attribute "
+	     + "with the same network (multi-target regression), empty for none; these attributes no longer get used "
+	     + "as features and instances with missing target values get skipped during training.";
   }
 
   /**
-   * Sets the batch size to use.
+   * Returns the default training config generator.
    *
-   * @param value 	the batch size
+   * @return		the default
    */
-  public void setMiniBatchSize(int value) {
-    if (value > 0)
-      m_MiniBatchSize = value;
+  @Override
+  protected TrainingConfigGenerator getDefaultTrainingConfig() {
+    return new TabNetRegressionLossGenerator();
   }
 
   /**
-   * Gets the batch size to use.
+   * Returns whether the network output gets turned into probabilities via
+   * softmax, i.e., whether the model is a classification one.
    *
-   * @return 		the batch size
+   * @return		always false
    */
-  public int getMiniBatchSize() {
-    return m_MiniBatchSize;
+  @Override
+  protected boolean hasSoftmaxOutput() {
+    return false;
   }
 
   /**
-   * Returns the tip text for this property.
+   * Returns the Capabilities of this classifier.
    *
-   * @return		tip text for this property suitable for
-   * 			displaying in the explorer/experimenter gui
+   * @return the capabilities of this object
+   * @see Capabilities
    */
-  public String miniBatchSizeTipText() {
-    return "The batch size to use.";
+  @Override
+  public Capabilities getCapabilities() {
+    Capabilities result = super.getCapabilities();
+    result.enable(Capability.NUMERIC_CLASS);
+    return result;
   }
 
   /**
-   * Sets the number of epochs to train for.
+   * Adds the additional targets as labels.
    *
-   * @param value 	the epochs
+   * @param builder	the builder to configure
    */
-  public void setNumEpochs(int value) {
-    if (value > 0)
-      m_NumEpochs = value;
+  @Override
+  protected void configureLabels(InstancesDataset.InstancesBuilder<?> builder) {
+    if (!m_AdditionalTargets.isEmpty())
+      builder.addMatchingLabels(m_AdditionalTargets);
   }
 
   /**
-   * Gets the number of epochs to train for.
+   * Removes the instances with missing values in the class attribute or
+   * the additional targets. Only creates a copy of the data if there are any.
    *
-   * @return 		the epochs
+   * @param data	the data to process
+   * @return		the data without missing target values
    */
-  public int getNumEpochs() {
-    return m_NumEpochs;
-  }
+  @Override
+  protected Instances removeMissingTargets(Instances data) {
+    List<Integer>	targets;
+    boolean		missing;
+    int			i;
 
-  /**
-   * Returns the tip text for this property.
-   *
-   * @return		tip text for this property suitable for
-   * 			displaying in the explorer/experimenter gui
-   */
-  public String numEpochsTipText() {
-    return "The number of epochs to train for.";
-  }
+    data = super.removeMissingTargets(data);
+    if (m_AdditionalTargets.isEmpty())
+      return data;
 
-  /**
-   * Sets the ID/prefix generator for saving the model.
-   *
-   * @param value 	the ID/prefix
-   */
-  public void setID(IDGenerator value) {
-    m_ID = value;
-  }
+    targets = new ArrayList<>();
+    for (i = 0; i < data.numAttributes(); i++) {
+      if ((i != data.classIndex()) && data.attribute(i).isNumeric() && data.attribute(i).name().matches(m_AdditionalTargets))
+	targets.add(i);
+    }
 
-  /**
-   * Gets the ID/prefix generator for saving the model.
-   *
-   * @return 		the ID/prefix
-   */
-  public IDGenerator getID() {
-    return m_ID;
-  }
+    missing = false;
+    for (i = 0; (i < data.numInstances()) && !missing; i++) {
+      for (int target: targets) {
+	if (data.instance(i).isMissing(target)) {
+	  missing = true;
+	  break;
+	}
+      }
+    }
 
-  /**
-   * Returns the tip text for this property.
-   *
-   * @return		tip text for this property suitable for
-   * 			displaying in the explorer/experimenter gui
-   */
-  public String IDTipText() {
-    return "The ID/prefix generator to use for saving the model.";
-  }
+    if (missing) {
+      data = new Instances(data);
+      for (int target: targets)
+	data.deleteWithMissing(target);
+    }
 
-  /**
-   * Sets the output directory generator to use.
-   *
-   * @param value 	the generator
-   */
-  public void setOutputDir(OutputDirGenerator value) {
-    m_OutputDir = value;
+    return data;
   }
 
   /**
-   * Gets the output directory generator to use.
+   * Returns the names of the targets that the network predicts: the class
+   * attribute followed by the additional targets.
    *
-   * @return 		the generator
+   * @return		the names
    */
-  public OutputDirGenerator getOutputDir() {
-    return m_OutputDir;
-  }
+  public String[] getTargetNames() {
+    String[]	result;
+    int		i;
 
-  /**
-   * Returns the tip text for this property.
-   *
-   * @return		tip text for this property suitable for
-   * 			displaying in the explorer/experimenter gui
-   */
-  public String outputDirTipText() {
-    return "The generator to use for generating the output directory.";
-  }
+    initPrediction();
+    result = new String[m_Dataset.getLabels().size()];
+    for (i = 0; i < result.length; i++)
+      result[i] = m_Dataset.getLabels().get(i).getName();
 
-  /**
-   * Sets the training config generator to use.
-   *
-   * @param value 	the generator
-   */
-  public void setTrainingConfig(TrainingConfigGenerator value) {
-    m_TrainingConfig = value;
+    return result;
   }
 
   /**
-   * Gets the training config generator to use.
+   * Turns the output of the network into a distribution, i.e., the
+   * prediction for the class attribute.
    *
-   * @return 		the generator
+   * @param output	the output (all targets)
+   * @return		the distribution
    */
-  public TrainingConfigGenerator getTrainingConfig() {
-    return m_TrainingConfig;
+  @Override
+  protected double[] toDistribution(float[] output) {
+    return new double[]{output[0]};
   }
 
   /**
-   * Returns the tip text for this property.
+   * Turns the output of the network into the predictions for all targets.
    *
-   * @return		tip text for this property suitable for
-   * 			displaying in the explorer/experimenter gui
+   * @param output	the output
+   * @return		the predictions (see {@link #getTargetNames()})
    */
-  public String trainingConfigTipText() {
-    return "The generator to use for generating the configuration to train the network.";
+  protected double[] toTargets(float[] output) {
+    return super.toDistribution(output);
   }
 
   /**
-   * Sets whether to enable support for parallel execution.
-   * If enabled, a unique ID gets appended to model IDs, requiring the user to manually delete unwanted .params files
+   * Predicts all targets for the instance with a single forward pass.
    *
-   * @param value 	true if to enable
+   * @param instance	the instance to make the prediction for
+   * @return		the predictions (see {@link #getTargetNames()})
+   * @throws Exception	if the prediction fails
    */
-  public void setSupportParallelExecution(boolean value) {
-    m_SupportParallelExecution = value;
+  public double[] predictTargets(Instance instance) throws Exception {
+    initPrediction();
+    return toTargets(m_Predictor.predict(m_Dataset.encodeFeatures(instance)));
   }
 
   /**
-   * Gets the output directory generator to use.
-   * If enabled, a unique ID gets appended to model IDs, requiring the user to manually delete unwanted .params files
+   * Predicts all targets for the instances, using batches of size
+   * {@link #getBatchSize()}.
    *
-   * @return 		true if enabled
+   * @param insts	the instances to make the predictions for
+   * @return		the predictions per instance (see {@link #getTargetNames()})
+   * @throws Exception	if the predictions fail
    */
-  public boolean getSupportParallelExecution() {
-    return m_SupportParallelExecution;
-  }
+  public double[][] predictTargets(Instances insts) throws Exception {
+    double[][]		result;
+    List<float[]>	outputs;
+    int			i;
 
-  /**
-   * Returns the tip text for this property.
-   *
-   * @return		tip text for this property suitable for
-   * 			displaying in the explorer/experimenter gui
-   */
-  public String supportParallelExecutionTipText() {
-    return "If enabled, a unique ID gets appended to model IDs, requiring the user to manually delete unwanted .params files.";
-  }
+    outputs = predictOutputs(insts);
+    result  = new double[outputs.size()][];
+    for (i = 0; i < outputs.size(); i++)
+      result[i] = toTargets(outputs.get(i));
 
-  /**
-   * Returns the Capabilities of this classifier. Maximally permissive
-   * capabilities are allowed by default. Derived classifiers should override
-   * this method and first disable all capabilities and then enable just those
-   * capabilities that make sense for the scheme.
-   *
-   * @return the capabilities of this object
-   * @see Capabilities
-   */
-  @Override
-  public Capabilities getCapabilities() {
-    Capabilities result = super.getCapabilities();
-    result.disableAll();
-    result.enable(Capability.NUMERIC_ATTRIBUTES);
-    result.enable(Capability.NUMERIC_CLASS);
     return result;
   }
 
   /**
-   * Generates a classifier. Must initialize all fields of the classifier
-   * that are not being set via options (ie. multiple calls of buildClassifier
-   * must always lead to the same result). Must not change the dataset
-   * in any way.
+   * Computes the sum of the squared errors for the batch (averaged across
+   * the targets per row).
    *
-   * @param data set of instances serving as training data
-   * @throws Exception if the classifier has not been
-   *                   generated successfully
+   * @param output	the output of the network (batch x targets)
+   * @param labels	the stored labels (batch x targets)
+   * @return		the sum of the squared errors
    */
   @Override
-  public void buildClassifier(Instances data) throws Exception {
-    Dataset[] 				splitDataset;
-    Dataset 				trainDataset;
-    Dataset 				validateDataset;
-    TrainingConfig 			trainingConfig;
-    ZooModel<ListFeatures, Float> 	zooModel;
-    String 				modelID;
-    File 				modelDir;
-    Path 				modelPath;
-    String				modelName;
-
-    getCapabilities().test(data);
-
-    modelID   = m_ID.generate() + (m_SupportParallelExecution ? UniqueIDs.next() : "");
-    modelDir  = m_OutputDir.generate().getAbsoluteFile();
-    modelPath = modelDir.toPath();
-    modelName = modelDir + "|" + modelID;
-
-    // delete any left-over .params files
-    for (File f: modelDir.listFiles()) {
-      if (f.getName().matches("^" + modelID + "-[0-9]+.params$")) {
-	if (getDebug())
-	  System.out.println("Removing: " + f);
-	try {
-	  if (!f.delete())
-	    System.err.println("Failed to delete: " + f);
-	}
-	catch (Exception e) {
-	  System.err.println("Failed to delete: " + f);
-	  e.printStackTrace();
-	}
-      }
-    }
-
-    if (getDebug())
-      System.out.println("Training model: " + modelID);
-
-    m_Dataset = InstancesDataset.builder()
-		  .setSampling(m_MiniBatchSize, true)
-		  .data(data)
-		  .addAllFeatures()
-		  .build();
-
-    m_DatasetConfig = m_Dataset.toJson().toString();
-    splitDataset    = m_Dataset.randomSplit(m_TrainPercentage, 100 - m_TrainPercentage);
-    trainDataset    = splitDataset[0];
-    validateDataset = splitDataset[1];
-
-    DJLUtils.initClassLoader(this);
-    DJLUtils.registerPytorch();
-    DJLUtils.setPyTorchSeed(m_Seed);
-
-    synchronized (m_Models) {
-      if (m_Models.containsKey(modelName)) {
-	m_Models.get(modelName).close();
-	m_Models.remove(modelName);
-      }
-      m_Model = Model.newInstance(modelName);
-      m_Model.setBlock(m_Network.generate(m_Dataset));
-      m_Models.put(modelName, m_Model);
-    }
-
-    trainingConfig = m_TrainingConfig.generate();
-
-    try (Trainer trainer = m_Model.newTrainer(trainingConfig)) {
-      trainer.initialize(new Shape(1, m_Dataset.getFeatureSize()));
-      EasyTrain.fit(trainer, m_NumEpochs, trainDataset, validateDataset);
-    }
-
-    m_Translator = m_Dataset.matchingTranslatorOptions().option(ListFeatures.class, Float.class);
-    m_Header     = new Instances(data, 0);
-
-    if (getDebug())
-      System.out.println("Saving model '" + modelID + "' to: " + modelPath);
-    zooModel = new ZooModel<>(m_Model, m_Translator);
-    zooModel.save(modelPath, modelID);
-  }
-
-  /**
-   * Prepares the classifier for predictions.
-   */
-  public void initPrediction() {
-    String 	modelID;
-    Path 	modelPath;
-
-    modelID   = m_ID.generate();
-    modelPath = m_OutputDir.generate().toPath();
-
-    if (m_Model == null) {
-      if (getDebug())
-	System.out.println("Loading model '" + modelID + "' from: " + modelPath);
-      try {
-	m_Dataset = InstancesDataset.builder()
-		      .setSampling(m_MiniBatchSize, true)
-		      .data(m_Header)
-		      .fromJson(m_DatasetConfig)
-		      .build();
-	m_Translator = m_Dataset.matchingTranslatorOptions().option(ListFeatures.class, Float.class);
-	m_Model = Model.newInstance(modelID);
-	m_Model.setBlock(m_Network.generate(m_Dataset));
-	m_Model.load(modelPath);
-      }
-      catch (Exception e) {
-	throw new IllegalStateException("Failed to recreate DJL dataset from config!", e);
-      }
-    }
-
-    if (m_Predictor == null) {
-      if (getDebug())
-	System.out.println("Instantiating predictor for model: " + modelID);
-      m_Predictor = m_Model.newPredictor(m_Translator);
-    }
+  protected double computeBatchError(NDArray output, NDArray labels) {
+    return output.reshape(-1).sub(labels.reshape(-1)).square().sum().getFloat() * labels.getShape().get(0) / labels.size();
   }
 
   /**
-   * Classifies the given test instance. The instance has to belong to a dataset
-   * when it's being classified. Note that a classifier MUST implement either
-   * this or distributionForInstance().
+   * Turns the sum of the squared errors into the root mean squared error.
    *
-   * @param instance the instance to be classified
-   * @return the predicted most likely class for the instance or
-   *         Utils.missingValue() if no prediction is made
-   * @throws Exception if an error occurred during the prediction
+   * @param sum		the sum of the squared errors
+   * @param count	the number of rows
+   * @return		the RMSE
    */
   @Override
-  public double classifyInstance(Instance instance) throws Exception {
-    ListFeatures 	input;
-    int			i;
-    int			index;
-    Float 		pred;
-
-    initPrediction();
-
-    input = new ListFeatures();
-    for (i = 0; i < m_Dataset.getFeatureSize(); i++) {
-      index = instance.dataset().attribute(m_Dataset.getFeatures().get(i).getName()).index();
-      if (instance.attribute(index).isNumeric())
-	input.add("" + instance.value(index));
-      else
-	input.add(instance.stringValue(index));
-    }
-    pred = m_Predictor.predict(input);
-    return pred.doubleValue();
+  protected double finalizeError(double sum, long count) {
+    return Math.sqrt(sum / count);
   }
 
   /**
-   * Returns a short description of the setup.
+   * Returns the name of the error measure.
    *
-   * @return		the description
+   * @return		the name
    */
   @Override
-  public String toString() {
-    StringBuilder	result;
-
-    result = new StringBuilder();
-    result.append("Network generator...: ").append(Utils.toCommandLine(getNetwork())).append("\n");
-    result.append("Train %.............: ").append(getTrainPercentage()).append("\n");
-    result.append("Mini batch size.....: ").append(getMiniBatchSize()).append("\n");
-    result.append("# epochs............: ").append(getNumEpochs()).append("\n");
-    result.append("ID generator........: ").append(Utils.toCommandLine(getID())).append("\n");
-    result.append("Output dir generator: ").append(Utils.toCommandLine(getOutputDir())).append("\n");
-
-    return result.toString();
+  protected String getErrorName() {
+    return "RMSE";
   }
 
   /**
@@ -797,57 +530,4 @@ public class DJLRegressor
   public static void main(String[] args) throws Exception {
     runClassifier(new DJLRegressor(), args);
   }
-
-  /**
-   * Closes this resource, relinquishing any underlying resources.
-   * This method is invoked automatically on objects managed by the
-   * {@code try}-with-resources statement.
-   *
-   * <p>While this interface method is declared to throw {@code
-   * Exception}, implementers are <em>strongly</em> encouraged to
-   * declare concrete implementations of the {@code close} method to
-   * throw more specific exceptions, or to throw no exception at all
-   * if the close operation cannot fail.
-   *
-   * <p> Cases where the close operation may fail require careful
-   * attention by implementers. It is strongly advised to relinquish
-   * the underlying resources and to internally <em>mark</em> the
-   * resource as closed, prior to throwing the exception. The {@code
-   * close} method is unlikely to be invoked more than once and so
-   * this ensures that the resources are released in a timely manner.
-   * Furthermore it reduces problems that could arise when the resource
-   * wraps, or is wrapped, by another resource.
-   *
-   * <p><em>Implementers of this interface are also strongly advised
-   * to not have the {@code close} method throw {@link
-   * InterruptedException}.</em>
-   * <p>
-   * This exception interacts with a thread's interrupted status,
-   * and runtime misbehavior is likely to occur if an {@code
-   * InterruptedException} is {@linkplain Throwable#addSuppressed
-   * suppressed}.
-   * <p>
-   * More generally, if it would cause problems for an
-   * exception to be suppressed, the {@code AutoCloseable.close}
-   * method should not throw it.
-   *
-   * <p>Note that unlike the {@link Closeable#close close}
-   * method of {@link Closeable}, this {@code close} method
-   * is <em>not</em> required to be idempotent.  In other words,
-   * calling this {@code close} method more than once may have some
-   * visible side effect, unlike {@code Closeable.close} which is
-   * required to have no effect if called more than once.
-   * <p>
-   * However, implementers of this interface are strongly encouraged
-   * to make their {@code close} methods idempotent.
-   *
-   * @throws Exception if this resource cannot be closed
-   */
-  @Override
-  public void close() throws Exception {
-    if (m_Model != null) {
-      m_Model.close();
-      m_Model = null;
-    }
-  }
 }
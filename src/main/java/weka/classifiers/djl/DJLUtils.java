@@ -21,12 +21,19 @@
 package weka.classifiers.djl;
 
 import ai.djl.engine.Engine;
+import ai.djl.ndarray.NDArray;
+import ai.djl.ndarray.NDManager;
+import ai.djl.ndarray.types.DataType;
+import ai.djl.nn.Block;
+import ai.djl.nn.Parameter;
 import ai.djl.pytorch.engine.PtEngine;
 import ai.djl.pytorch.engine.PtEngineProvider;
+import ai.djl.pytorch.jni.JniUtils;
 import ai.djl.util.ClassLoaderUtils;
 import weka.core.WekaPackageClassLoaderManager;
 
 import java.lang.reflect.Method;
+import java.util.List;
 
 /**
  * Utility functions for DJL.
@@ -42,6 +49,12 @@ public class DJLUtils {
 
   private static boolean EngineExceptionShown = false;
 
+  /** the number of active limits of the PyTorch threads. */
+  private static int NumThreadLimits = 0;
+
+  /** the number of PyTorch threads before the outermost limit. */
+  private static int NumThreadsBeforeLimit;
+
   /**
    * Sets the random seed to use for the PyTorch engine.
    *
@@ -60,6 +73,154 @@ public class DJLUtils {
     return Engine.getEngine(PtEngine.ENGINE_NAME).getSeed();
   }
 
+  /**
+   * Sets the number of threads that the PyTorch engine uses for intra-op
+   * parallelism. The setting is process-wide, i.e., it affects all threads
+   * and models in this JVM (see {@link #limitPyTorchNumThreads(int)} for
+   * temporarily limiting the threads).
+   *
+   * @param numThreads	the number of threads
+   */
+  public static void setPyTorchNumThreads(int numThreads) {
+    JniUtils.setNumThreads(numThreads);
+  }
+
+  /**
+   * Returns the number of threads that the PyTorch engine uses for intra-op
+   * parallelism (process-wide).
+   *
+   * @return		the number of threads
+   */
+  public static int getPyTorchNumThreads() {
+    return JniUtils.getNumThreads();
+  }
+
+  /**
+   * Limits the number of threads that the PyTorch engine uses for intra-op
+   * parallelism while several models get trained/evaluated in parallel
+   * threads. As the setting is process-wide, it should get applied once
+   * before starting the parallel threads and every call must be matched by
+   * a call of {@link #releasePyTorchNumThreads()} (e.g., in a finally block).
+   * Only the outermost of nested or concurrent limits takes effect and the
+   * previous setting gets restored once all of them got released.
+   *
+   * @param numThreads	the number of threads
+   */
+  public static synchronized void limitPyTorchNumThreads(int numThreads) {
+    if (NumThreadLimits == 0) {
+      NumThreadsBeforeLimit = getPyTorchNumThreads();
+      setPyTorchNumThreads(numThreads);
+    }
+    NumThreadLimits++;
+  }
+
+  /**
+   * Releases a limit obtained via {@link #limitPyTorchNumThreads(int)},
+   * restoring the previous number of threads once no limits are active
+   * anymore.
+   */
+  public static synchronized void releasePyTorchNumThreads() {
+    if (NumThreadLimits == 0)
+      return;
+    NumThreadLimits--;
+    if (NumThreadLimits == 0)
+      setPyTorchNumThreads(NumThreadsBeforeLimit);
+  }
+
+  /**
+   * Copies the (initialized) parameters of the source block into the ones
+   * of the target block, which must have the same structure. The values
+   * are written in place and get converted if the data types differ.
+   *
+   * @param source	the block to copy the parameters from
+   * @param target	the block to copy the parameters to
+   */
+  public static void copyParameters(Block source, Block target) {
+    List<Parameter>	sourceParams;
+    List<Parameter>	targetParams;
+    NDArray		from;
+    NDArray		to;
+    int			i;
+
+    sourceParams = source.getParameters().values();
+    targetParams = target.getParameters().values();
+    if (sourceParams.size() != targetParams.size())
+      throw new IllegalStateException("Different number of parameters: " + sourceParams.size() + " != " + targetParams.size());
+
+    for (i = 0; i < sourceParams.size(); i++) {
+      from = sourceParams.get(i).getArray();
+      to   = targetParams.get(i).getArray();
+      if (!from.getShape().equals(to.getShape()))
+	throw new IllegalStateException("Different shape for parameter '" + sourceParams.get(i).getName() + "': " + from.getShape() + " != " + to.getShape());
+      if (from.getDataType() == to.getDataType()) {
+	to.set(from.toByteBuffer());
+      }
+      else {
+	try (NDArray converted = from.toType(to.getDataType(), true)) {
+	  to.set(converted.toByteBuffer());
+	}
+      }
+    }
+  }
+
+  /**
+   * Returns the data type of the (initialized) parameters of the block.
+   *
+   * @param block	the block to inspect
+   * @return		the data type, float32 if the block has no parameters
+   */
+  public static DataType getParameterDataType(Block block) {
+    if (block.getParameters().isEmpty())
+      return DataType.FLOAT32;
+    return block.getParameters().valueAt(0).getArray().getDataType();
+  }
+
+  /**
+   * Returns the number of bytes occupied by the (initialized) parameters
+   * of the block in native memory.
+   *
+   * @param block	the block to inspect
+   * @return		the number of bytes
+   */
+  public static long getParameterBytes(Block block) {
+    long	result;
+    NDArray	array;
+
+    result = 0;
+    for (Parameter param: block.getParameters().values()) {
+      if (!param.isInitialized())
+	continue;
+      array   = param.getArray();
+      result += array.size() * array.getDataType().getNumOfBytes();
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns the number of arrays (and the bytes they occupy) that are
+   * managed by the manager, including the ones of its sub-managers. If this
+   * number grows with every prediction, arrays are leaking.
+   *
+   * @param manager	the manager to inspect
+   * @return		the number of arrays and bytes
+   */
+  public static long[] getManagedArrays(NDManager manager) {
+    long	numArrays;
+    long	numBytes;
+
+    numArrays = 0;
+    numBytes  = 0;
+    for (NDArray array: manager.getManagedArrays()) {
+      if (array.isReleased())
+	continue;
+      numArrays++;
+      numBytes += array.size() * array.getDataType().getNumOfBytes();
+    }
+
+    return new long[]{numArrays, numBytes};
+  }
+
   /**
    * Initialize the classloader using the current context.
    *
@@ -0,0 +1,123 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * DistributedWorker.java
+ * Copyright (C) 2025 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.classifiers.djl;
+
+import ai.djl.Model;
+import weka.classifiers.djl.dataset.InstancesDataset;
+import weka.classifiers.djl.distributed.TcpAllReduce;
+import weka.core.Instances;
+import weka.core.Utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ObjectInputStream;
+
+/**
+ * Worker process for the data-parallel training of a DJL classifier/regressor
+ * (see {@link AbstractDJLClassifier#getNumWorkers()}). Connects to the
+ * coordinator, receives the classifier setup, the dataset structure and its
+ * shard of the training data, and then trains its replica of the network in
+ * lock-step with the other processes. The parameters of the network only get
+ * kept by the coordinator.
+ * <br>
+ * Gets spawned automatically for local workers. For workers on other
+ * machines (coordinator using -remote-workers), start it with:
+ * <pre>
+ * java -cp ... weka.classifiers.djl.DistributedWorker -host coordinator-host -port port [-timeout seconds]
+ * </pre>
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class DistributedWorker {
+
+  /**
+   * Receives the setup from the coordinator and trains the replica.
+   *
+   * @param comm	the communication with the coordinator
+   * @throws Exception	if training fails
+   */
+  protected static void run(TcpAllReduce comm) throws Exception {
+    AbstractDJLClassifier	classifier;
+    String			structure;
+    Instances			shard;
+    int				numSteps;
+    int				numThreads;
+    InstancesDataset		dataset;
+
+    try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(comm.receive()))) {
+      classifier = (AbstractDJLClassifier) ois.readObject();
+      structure  = (String) ois.readObject();
+      shard      = (Instances) ois.readObject();
+      numSteps   = ois.readInt();
+      numThreads = ois.readInt();
+    }
+
+    DJLUtils.initClassLoader(classifier);
+    DJLUtils.registerPytorch();
+    DJLUtils.setPyTorchSeed(classifier.getSeed() + comm.getRank());
+    if (numThreads > 0)
+      DJLUtils.setPyTorchNumThreads(numThreads);
+
+    dataset = InstancesDataset.builder()
+		.setSampling(classifier.getMiniBatchSize(), true)
+		.data(shard)
+		.fromJson(structure)
+		.build();
+    dataset.prepare();
+
+    if (classifier.getDebug())
+      System.out.println("Worker " + comm.getRank() + "/" + (comm.getWorldSize() - 1) + ": rows=" + shard.numInstances() + ", steps/epoch=" + numSteps);
+
+    try (Model model = Model.newInstance("worker-" + comm.getRank())) {
+      model.setBlock(classifier.generateNetwork(dataset));
+      classifier.trainDataParallel(model, dataset, dataset, null, classifier.getNumEpochs(), numSteps, comm);
+    }
+  }
+
+  /**
+   * Connects to the coordinator and trains the replica.
+   * <br>
+   * Options: -port port [-host host] [-timeout seconds]
+   *
+   * @param args	the options
+   * @throws Exception	if training fails
+   */
+  public static void main(String[] args) throws Exception {
+    String	host;
+    String	port;
+    String	timeout;
+
+    host = Utils.getOption("host", args);
+    if (host.isEmpty())
+      host = "localhost";
+
+    port = Utils.getOption("port", args);
+    if (port.isEmpty())
+      throw new IllegalArgumentException("No port of coordinator provided (-port)!");
+
+    timeout = Utils.getOption("timeout", args);
+    if (timeout.isEmpty())
+      timeout = "" + TcpAllReduce.DEFAULT_TIMEOUT;
+
+    try (TcpAllReduce comm = TcpAllReduce.worker(host, Integer.parseInt(port), Integer.parseInt(timeout))) {
+      run(comm);
+    }
+  }
+}
@@ -0,0 +1,55 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Precision.java
+ * Copyright (C) 2025 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.classifiers.djl;
+
+import ai.djl.ndarray.types.DataType;
+
+/**
+ * The floating point precisions that the network parameters can use.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public enum Precision {
+  FLOAT32(DataType.FLOAT32),
+  FLOAT16(DataType.FLOAT16),
+  BFLOAT16(DataType.BFLOAT16);
+
+  /** the associated data type. */
+  private final DataType m_DataType;
+
+  /**
+   * Initializes the enum.
+   *
+   * @param dataType	the associated data type
+   */
+  private Precision(DataType dataType) {
+    m_DataType = dataType;
+  }
+
+  /**
+   * Returns the associated data type.
+   *
+   * @return		the data type
+   */
+  public DataType getDataType() {
+    return m_DataType;
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * PredictorPool.java
+ * Copyright (C) 2025 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.classifiers.djl;
+
+import ai.djl.Model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Pool of {@link BufferedPredictor} instances for the same model, for
+ * making predictions from multiple threads. Predictors get created lazily,
+ * up to the maximum size of the pool; further threads wait until a
+ * predictor gets released.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class PredictorPool
+  implements AutoCloseable {
+
+  /** the model to use. */
+  protected Model m_Model;
+
+  /** the batch size. */
+  protected int m_BatchSize;
+
+  /** the number of features. */
+  protected int m_NumFeatures;
+
+  /** whether to apply softmax to the output. */
+  protected boolean m_Softmax;
+
+  /** the maximum number of predictors. */
+  protected int m_MaxSize;
+
+  /** the idle predictors. */
+  protected BlockingQueue<BufferedPredictor> m_Idle;
+
+  /** all predictors created so far. */
+  protected List<BufferedPredictor> m_All;
+
+  /**
+   * Initializes the pool.
+   *
+   * @param model	the model to use
+   * @param batchSize	the batch size of the predictors
+   * @param numFeatures	the number of features
+   * @param softmax	whether to apply softmax to the output
+   * @param maxSize	the maximum number of predictors
+   */
+  public PredictorPool(Model model, int batchSize, int numFeatures, boolean softmax, int maxSize) {
+    m_Model       = model;
+    m_BatchSize   = batchSize;
+    m_NumFeatures = numFeatures;
+    m_Softmax     = softmax;
+    m_MaxSize     = Math.max(1, maxSize);
+    m_Idle        = new ArrayBlockingQueue<>(m_MaxSize);
+    m_All         = new ArrayList<>();
+  }
+
+  /**
+   * Returns the maximum number of predictors.
+   *
+   * @return		the maximum
+   */
+  public int getMaxSize() {
+    return m_MaxSize;
+  }
+
+  /**
+   * Obtains a predictor, creating one if none is idle and the pool has not
+   * reached its maximum size yet, otherwise waiting for one.
+   *
+   * @return		the predictor
+   * @throws InterruptedException	if interrupted while waiting
+   */
+  public BufferedPredictor acquire() throws InterruptedException {
+    BufferedPredictor	result;
+
+    result = m_Idle.poll();
+    if (result != null)
+      return result;
+
+    synchronized (m_All) {
+      if (m_All.size() < m_MaxSize) {
+	result = new BufferedPredictor(m_Model, m_BatchSize, m_NumFeatures, m_Softmax);
+	m_All.add(result);
+	return result;
+      }
+    }
+
+    return m_Idle.take();
+  }
+
+  /**
+   * Returns the predictor to the pool.
+   *
+   * @param predictor	the predictor to return
+   */
+  public void release(BufferedPredictor predictor) {
+    m_Idle.offer(predictor);
+  }
+
+  /**
+   * Closes all predictors.
+   */
+  @Override
+  public void close() {
+    synchronized (m_All) {
+      for (BufferedPredictor predictor: m_All)
+	predictor.close();
+      m_All.clear();
+      m_Idle.clear();
+    }
+  }
+}
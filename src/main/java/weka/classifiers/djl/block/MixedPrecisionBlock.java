@@ -0,0 +1,204 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * MixedPrecisionBlock.java
+ * Copyright (C) 2025 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.classifiers.djl.block;
+
+import ai.djl.Device;
+import ai.djl.MalformedModelException;
+import ai.djl.ndarray.NDArray;
+import ai.djl.ndarray.NDList;
+import ai.djl.ndarray.NDManager;
+import ai.djl.ndarray.types.DataType;
+import ai.djl.ndarray.types.Shape;
+import ai.djl.nn.AbstractBlock;
+import ai.djl.nn.Block;
+import ai.djl.nn.Parameter;
+import ai.djl.training.ParameterStore;
+import ai.djl.util.PairList;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Wraps a block to perform the forward (and therefore backward) pass during
+ * training in a lower precision, e.g., bfloat16, while the parameters remain
+ * in float32 (master weights): the inputs and the weights/biases get cast
+ * to the compute precision, the outputs back to float32 (normalization
+ * layers receive their parameters in float32). As the casts are
+ * part of the computation graph, the gradients arrive in float32 at the
+ * parameters. Outside of training, the wrapped block gets used as is.
+ * <br>
+ * The parameters get saved/loaded as if the block was not wrapped, i.e.,
+ * the parameter files are interchangeable with the ones of the plain block.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class MixedPrecisionBlock
+  extends AbstractBlock {
+
+  /**
+   * Parameter store that casts the weights and biases of another store.
+   * Normalization parameters (gamma, beta, running statistics) are left
+   * in float32, as the running statistics get updated in place.
+   */
+  protected static class CastingParameterStore
+    extends ParameterStore {
+
+    /** the store to cast the values of. */
+    protected ParameterStore m_Store;
+
+    /** the data type to cast to. */
+    protected DataType m_DataType;
+
+    /** the manager to attach the cast values to. */
+    protected NDManager m_Manager;
+
+    /**
+     * Initializes the store.
+     *
+     * @param store	the store to cast the values of
+     * @param dataType	the data type to cast to
+     * @param manager	the manager to attach the cast values to (e.g., of the batch)
+     */
+    public CastingParameterStore(ParameterStore store, DataType dataType, NDManager manager) {
+      super(store.getManager(), false);
+      m_Store    = store;
+      m_DataType = dataType;
+      m_Manager  = manager;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public NDArray getValue(Parameter parameter, Device device, boolean training) {
+      NDArray	result;
+
+      result = m_Store.getValue(parameter, device, training);
+      if (result.getDataType() != DataType.FLOAT32)
+	return result;
+      if ((parameter.getType() != Parameter.Type.WEIGHT) && (parameter.getType() != Parameter.Type.BIAS))
+	return result;
+      result = result.toType(m_DataType, false);
+      result.attach(m_Manager);
+
+      return result;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public NDManager getManager() {
+      return m_Store.getManager();
+    }
+  }
+
+  /** the wrapped block. */
+  protected Block m_Block;
+
+  /** the data type for computations during training. */
+  protected DataType m_DataType;
+
+  /**
+   * Initializes the block.
+   *
+   * @param block	the block to wrap
+   * @param dataType	the data type for computations during training
+   */
+  public MixedPrecisionBlock(Block block, DataType dataType) {
+    m_Block    = addChildBlock("block", block);
+    m_DataType = dataType;
+  }
+
+  /**
+   * Returns the wrapped block.
+   *
+   * @return		the block
+   */
+  public Block getBlock() {
+    return m_Block;
+  }
+
+  /**
+   * Returns the data type used for computations during training.
+   *
+   * @return		the data type
+   */
+  public DataType getDataType() {
+    return m_DataType;
+  }
+
+  /**
+   * Casts the arrays that are of the specified type.
+   *
+   * @param list	the arrays to cast
+   * @param from	the type to cast from
+   * @param to		the type to cast to
+   * @return		the cast arrays
+   */
+  protected NDList cast(NDList list, DataType from, DataType to) {
+    NDList	result;
+
+    result = new NDList(list.size());
+    for (NDArray array: list)
+      result.add((array.getDataType() == from) ? array.toType(to, false) : array);
+
+    return result;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  protected NDList forwardInternal(ParameterStore parameterStore, NDList inputs, boolean training, PairList<String, Object> params) {
+    NDList	outputs;
+
+    if (!training)
+      return m_Block.forward(parameterStore, inputs, false, params);
+
+    outputs = m_Block.forward(
+      new CastingParameterStore(parameterStore, m_DataType, inputs.head().getManager()),
+      cast(inputs, DataType.FLOAT32, m_DataType),
+      true,
+      params);
+
+    return cast(outputs, m_DataType, DataType.FLOAT32);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  protected void initializeChildBlocks(NDManager manager, DataType dataType, Shape... inputShapes) {
+    m_Block.initialize(manager, dataType, inputShapes);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Shape[] getOutputShapes(Shape[] inputShapes) {
+    return m_Block.getOutputShapes(inputShapes);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void saveParameters(DataOutputStream os) throws IOException {
+    m_Block.saveParameters(os);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void loadParameters(NDManager manager, DataInputStream is) throws IOException, MalformedModelException {
+    m_Block.loadParameters(manager, is);
+  }
+}
@@ -0,0 +1,274 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * PreprocessingBlock.java
+ * Copyright (C) 2025 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.classifiers.djl.block;
+
+import ai.djl.ndarray.NDArray;
+import ai.djl.ndarray.NDArrays;
+import ai.djl.ndarray.NDList;
+import ai.djl.ndarray.NDManager;
+import ai.djl.ndarray.types.DataType;
+import ai.djl.ndarray.types.Shape;
+import ai.djl.ndarray.types.SparseFormat;
+import ai.djl.nn.AbstractBlock;
+import ai.djl.nn.Parameter;
+import ai.djl.nn.core.Embedding;
+import ai.djl.training.ParameterStore;
+import ai.djl.util.PairList;
+
+/**
+ * Block that turns raw feature vectors into the input for the actual network:
+ * numeric features get standardized using the supplied means and standard
+ * deviations, nominal features (encoded as index of the label in the
+ * vocabulary, -1 for unknown labels) get one-hot encoded or, if an embedding
+ * size is supplied, get mapped to a learned embedding (with an additional
+ * row for unknown labels). Consecutive numeric features get processed as a
+ * single slice. Only the embeddings have parameters.
+ * <br>
+ * Missing values (NaN) get imputed with the mean for numeric features and
+ * treated as unknown labels for nominal ones. Optionally, indicator columns
+ * (1 if missing, 0 otherwise) get appended for selected features.
+ * <br>
+ * The computations are performed in float32, the output uses the data type
+ * of the input.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class PreprocessingBlock
+  extends AbstractBlock {
+
+  /** the means of the features (0 for nominal ones). */
+  protected float[] m_Means;
+
+  /** the standard deviations of the features (1 for nominal ones). */
+  protected float[] m_StdDevs;
+
+  /** the vocabulary sizes of the features (0 for numeric ones). */
+  protected int[] m_VocabularySizes;
+
+  /** the embedding sizes of the features (0 for one-hot encoding). */
+  protected int[] m_EmbeddingSizes;
+
+  /** the embedding parameters (null if no embedding). */
+  protected Parameter[] m_Embeddings;
+
+  /** whether to append a missing value indicator for the features. */
+  protected boolean[] m_MissingIndicators;
+
+  /** the number of outputs. */
+  protected int m_OutputSize;
+
+  /** whether all features are numeric. */
+  protected boolean m_AllNumeric;
+
+  /**
+   * Initializes the block, using one-hot encoding for all nominal features.
+   *
+   * @param means		the means of the features (ignored for nominal ones)
+   * @param stdDevs		the standard deviations of the features (ignored for nominal ones)
+   * @param vocabularySizes	the vocabulary sizes of the features, 0 for numeric ones (or empty vocabularies)
+   */
+  public PreprocessingBlock(float[] means, float[] stdDevs, int[] vocabularySizes) {
+    this(means, stdDevs, vocabularySizes, new int[vocabularySizes.length]);
+  }
+
+  /**
+   * Initializes the block.
+   *
+   * @param means		the means of the features (ignored for nominal ones)
+   * @param stdDevs		the standard deviations of the features (ignored for nominal ones)
+   * @param vocabularySizes	the vocabulary sizes of the features, 0 for numeric ones (or empty vocabularies)
+   * @param embeddingSizes	the embedding sizes of the nominal features, 0 for one-hot encoding
+   */
+  public PreprocessingBlock(float[] means, float[] stdDevs, int[] vocabularySizes, int[] embeddingSizes) {
+    this(means, stdDevs, vocabularySizes, embeddingSizes, new boolean[vocabularySizes.length]);
+  }
+
+  /**
+   * Initializes the block.
+   *
+   * @param means		the means of the features (ignored for nominal ones)
+   * @param stdDevs		the standard deviations of the features (ignored for nominal ones)
+   * @param vocabularySizes	the vocabulary sizes of the features, 0 for numeric ones (or empty vocabularies)
+   * @param embeddingSizes	the embedding sizes of the nominal features, 0 for one-hot encoding
+   * @param missingIndicators	whether to append a missing value indicator for the features
+   */
+  public PreprocessingBlock(float[] means, float[] stdDevs, int[] vocabularySizes, int[] embeddingSizes, boolean[] missingIndicators) {
+    int		i;
+
+    if ((means.length != stdDevs.length) || (means.length != vocabularySizes.length) || (means.length != embeddingSizes.length) || (means.length != missingIndicators.length))
+      throw new IllegalArgumentException("Means, standard deviations, vocabulary/embedding sizes and missing indicators differ in length: "
+					   + means.length + " != " + stdDevs.length + " != " + vocabularySizes.length + " != " + embeddingSizes.length + " != " + missingIndicators.length);
+
+    m_Means             = means.clone();
+    m_StdDevs           = stdDevs.clone();
+    m_VocabularySizes   = vocabularySizes.clone();
+    m_EmbeddingSizes    = new int[embeddingSizes.length];
+    m_Embeddings        = new Parameter[embeddingSizes.length];
+    m_MissingIndicators = missingIndicators.clone();
+    m_OutputSize        = 0;
+    m_AllNumeric        = true;
+    for (i = 0; i < vocabularySizes.length; i++) {
+      if (vocabularySizes[i] > 0) {
+	m_Means[i]   = 0.0f;
+	m_StdDevs[i] = 1.0f;
+	m_AllNumeric = false;
+	if (embeddingSizes[i] > 0) {
+	  m_EmbeddingSizes[i] = embeddingSizes[i];
+	  m_Embeddings[i]     = addParameter(
+	    Parameter.builder()
+	      .setName("embedding_" + i)
+	      .setType(Parameter.Type.WEIGHT)
+	      .optShape(new Shape(vocabularySizes[i] + 1, embeddingSizes[i]))
+	      .build());
+	  m_OutputSize += embeddingSizes[i];
+	}
+	else {
+	  m_OutputSize += vocabularySizes[i];
+	}
+      }
+      else {
+	if ((m_StdDevs[i] == 0.0f) || Float.isNaN(m_StdDevs[i]))
+	  m_StdDevs[i] = 1.0f;
+	m_OutputSize++;
+      }
+      if (m_MissingIndicators[i])
+	m_OutputSize++;
+    }
+  }
+
+  /**
+   * Returns the number of raw input features.
+   *
+   * @return		the number of inputs
+   */
+  public int getInputSize() {
+    return m_VocabularySizes.length;
+  }
+
+  /**
+   * Returns the number of features generated for the network.
+   *
+   * @return		the number of outputs
+   */
+  public int getOutputSize() {
+    return m_OutputSize;
+  }
+
+  /**
+   * Looks up the embeddings of the nominal feature. Unknown labels (-1)
+   * and missing values get mapped onto the last row of the embedding.
+   *
+   * @param parameterStore	the store for the parameters
+   * @param column		the indices of the labels (batch x 1)
+   * @param index		the position of the feature
+   * @param training		whether training is happening
+   * @return			the embeddings (batch x embedding size)
+   */
+  protected NDArray embed(ParameterStore parameterStore, NDArray column, int index, boolean training) {
+    NDArray	weight;
+    NDArray	indices;
+    int		unknown;
+
+    weight  = parameterStore.getValue(m_Embeddings[index], column.getDevice(), training);
+    unknown = m_VocabularySizes[index];
+    indices = column.reshape(-1);
+    indices = NDArrays.where(indices.lt(0).logicalOr(indices.isNaN()), indices.zerosLike().add(unknown), indices).toType(DataType.INT64, false);
+
+    return Embedding.embedding(indices, weight, SparseFormat.DENSE).singletonOrThrow().toType(DataType.FLOAT32, false);
+  }
+
+  /**
+   * Replaces missing values in the standardized numeric features with 0,
+   * i.e., imputes them with the mean.
+   *
+   * @param normalized	the standardized features
+   * @return		the imputed features
+   */
+  protected NDArray impute(NDArray normalized) {
+    return NDArrays.where(normalized.isNaN(), normalized.zerosLike(), normalized);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  protected NDList forwardInternal(ParameterStore parameterStore, NDList inputs, boolean training, PairList<String, Object> params) {
+    NDArray	input;
+    NDArray	normalized;
+    NDManager	manager;
+    NDList	parts;
+    DataType	dataType;
+    int		start;
+    int		end;
+    int		i;
+
+    input    = inputs.singletonOrThrow();
+    dataType = input.getDataType();
+    manager  = input.getManager();
+    if (dataType != DataType.FLOAT32)
+      input = input.toType(DataType.FLOAT32, false);
+
+    normalized = input.sub(manager.create(m_Means)).div(manager.create(m_StdDevs));
+
+    parts = new NDList();
+    if (m_AllNumeric) {
+      parts.add(impute(normalized));
+    }
+    else {
+      start = 0;
+      while (start < m_VocabularySizes.length) {
+	if (m_EmbeddingSizes[start] > 0) {
+	  parts.add(embed(parameterStore, normalized.get(":, " + start + ":" + (start + 1)), start, training));
+	  start++;
+	}
+	else if (m_VocabularySizes[start] > 0) {
+	  parts.add(normalized.get(":, " + start + ":" + (start + 1))
+		      .eq(manager.arange(0.0f, (float) m_VocabularySizes[start]))
+		      .toType(DataType.FLOAT32, false));
+	  start++;
+	}
+	else {
+	  end = start;
+	  while ((end < m_VocabularySizes.length) && (m_VocabularySizes[end] == 0))
+	    end++;
+	  parts.add(impute(normalized.get(":, " + start + ":" + end)));
+	  start = end;
+	}
+      }
+    }
+
+    for (i = 0; i < m_MissingIndicators.length; i++) {
+      if (m_MissingIndicators[i])
+	parts.add(input.get(":, " + i + ":" + (i + 1)).isNaN().toType(DataType.FLOAT32, false));
+    }
+
+    normalized = (parts.size() == 1) ? parts.singletonOrThrow() : NDArrays.concat(parts, 1);
+
+    if (dataType != DataType.FLOAT32)
+      normalized = normalized.toType(dataType, false);
+
+    return new NDList(normalized);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Shape[] getOutputShapes(Shape[] inputShapes) {
+    return new Shape[]{new Shape(inputShapes[0].get(0), m_OutputSize)};
+  }
+}
@@ -0,0 +1,311 @@
+/*
+ * IndexedDataset.java
+ * Copyright (C) 2025 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.classifiers.djl.dataset;
+
+import ai.djl.ndarray.NDManager;
+import ai.djl.training.dataset.BatchSampler;
+import ai.djl.training.dataset.RandomAccessDataset;
+import ai.djl.training.dataset.Record;
+import ai.djl.training.dataset.Sampler;
+import ai.djl.training.dataset.SequenceSampler;
+import ai.djl.translate.TranslateException;
+import ai.djl.util.Progress;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * View on a subset of the rows of another dataset (primitive int array of
+ * row indices), with its own sampler. Subsets of views get mapped onto the
+ * underlying dataset directly, i.e., there is only ever one level of
+ * indirection. Unlike DJL's sub-datasets, which use the sampler of the
+ * parent, shuffled views use a seeded {@link PermutationSampler}, making the
+ * order independent of DJL's global random number generator and of other
+ * views on the same (e.g., shared) dataset.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class IndexedDataset extends RandomAccessDataset {
+
+  /** the underlying dataset. */
+  protected RandomAccessDataset dataset;
+
+  /** the rows of the underlying dataset. */
+  protected int[] rows;
+
+  /**
+   * Initializes the view.
+   *
+   * @param dataset	the underlying dataset
+   * @param rows	the rows of the dataset to use
+   * @param sampler	the sampler to use
+   */
+  public IndexedDataset(RandomAccessDataset dataset, int[] rows, Sampler sampler) {
+    super(new Builder().setSampling(sampler));
+    if (dataset instanceof IndexedDataset) {
+      this.dataset = ((IndexedDataset) dataset).dataset;
+      this.rows    = ((IndexedDataset) dataset).map(rows);
+    }
+    else {
+      this.dataset = dataset;
+      this.rows    = rows.clone();
+    }
+  }
+
+  /**
+   * Maps the rows of this view onto the rows of the underlying dataset.
+   *
+   * @param rows	the rows in this view
+   * @return		the rows in the underlying dataset
+   */
+  protected int[] map(int[] rows) {
+    int[]	result;
+    int		i;
+
+    result = new int[rows.length];
+    for (i = 0; i < rows.length; i++)
+      result[i] = this.rows[rows[i]];
+
+    return result;
+  }
+
+  /**
+   * Returns the underlying dataset.
+   *
+   * @return		the dataset
+   */
+  public RandomAccessDataset getDataset() {
+    return dataset;
+  }
+
+  /**
+   * Returns the rows of the underlying dataset.
+   *
+   * @return		the rows
+   */
+  public int[] getRows() {
+    return rows.clone();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Record get(NDManager manager, long index) throws IOException {
+    return dataset.get(manager, rows[Math.toIntExact(index)]);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  protected long availableSize() {
+    return rows.length;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void prepare(Progress progress) throws IOException, TranslateException {
+    dataset.prepare(progress);
+  }
+
+  /**
+   * Creates a view that gets sampled in random order.
+   *
+   * @param dataset	the dataset (or view) to create the view on
+   * @param rows	the rows of the dataset to use
+   * @param batchSize	the mini-batch size
+   * @param seed	the seed for the order of the rows
+   * @return		the view
+   */
+  public static IndexedDataset shuffled(RandomAccessDataset dataset, int[] rows, int batchSize, long seed) {
+    return new IndexedDataset(dataset, rows, new BatchSampler(new PermutationSampler(seed), batchSize, false));
+  }
+
+  /**
+   * Creates a view that gets sampled in order.
+   *
+   * @param dataset	the dataset (or view) to create the view on
+   * @param rows	the rows of the dataset to use
+   * @param batchSize	the mini-batch size
+   * @return		the view
+   */
+  public static IndexedDataset sequential(RandomAccessDataset dataset, int[] rows, int batchSize) {
+    return new IndexedDataset(dataset, rows, new BatchSampler(new SequenceSampler(), batchSize, false));
+  }
+
+  /**
+   * Splits the rows according to the ratios. The first split (the training
+   * data) gets sampled in random order, the others in order.
+   *
+   * @param dataset	the dataset to split
+   * @param rows	the rows of the dataset in the order to split them
+   * @param batchSize	the mini-batch size
+   * @param seed	the seed for the order of the training data
+   * @param ratio	the ratios of the splits
+   * @return		the splits
+   */
+  protected static IndexedDataset[] splitRows(RandomAccessDataset dataset, int[] rows, int batchSize, long seed, int... ratio) {
+    IndexedDataset[]	result;
+    int[][]		splits;
+    int			i;
+
+    splits = chunks(rows, ratio);
+    result = new IndexedDataset[ratio.length];
+    for (i = 0; i < ratio.length; i++) {
+      if (i == 0)
+	result[i] = shuffled(dataset, splits[i], batchSize, seed + 1);
+      else
+	result[i] = sequential(dataset, splits[i], batchSize);
+    }
+
+    return result;
+  }
+
+  /**
+   * Splits the rows into consecutive chunks according to the ratios, the
+   * last chunk receives any remainder.
+   *
+   * @param rows	the rows to split
+   * @param ratio	the ratios of the splits
+   * @return		the splits
+   */
+  protected static int[][] chunks(int[] rows, int... ratio) {
+    int[][]	result;
+    int		sum;
+    int		start;
+    int		end;
+    int		i;
+
+    sum = 0;
+    for (i = 0; i < ratio.length; i++)
+      sum += ratio[i];
+
+    result = new int[ratio.length][];
+    start  = 0;
+    for (i = 0; i < ratio.length; i++) {
+      if (i == ratio.length - 1)
+	end = rows.length;
+      else
+	end = start + (int) ((long) rows.length * ratio[i] / sum);
+      result[i] = Arrays.copyOfRange(rows, start, end);
+      start     = end;
+    }
+
+    return result;
+  }
+
+  /**
+   * Randomly splits the rows of the dataset according to the ratios, using
+   * a permutation generated from the seed. The first split (the training
+   * data) gets sampled in random order, the others in order.
+   *
+   * @param dataset	the dataset to split
+   * @param batchSize	the mini-batch size
+   * @param seed	the seed for the split and the order of the training data
+   * @param ratio	the ratios of the splits
+   * @return		the splits
+   */
+  public static IndexedDataset[] split(RandomAccessDataset dataset, int batchSize, long seed, int... ratio) {
+    return splitRows(dataset, PermutationSampler.permutation(Math.toIntExact(dataset.size()), seed), batchSize, seed, ratio);
+  }
+
+  /**
+   * Splits the rows of the dataset according to the ratios, keeping the
+   * order of the rows, e.g., the first split contains the first rows and
+   * the last split the last rows (time series). The first split (the
+   * training data) gets sampled in random order, the others in order.
+   *
+   * @param dataset	the dataset to split
+   * @param batchSize	the mini-batch size
+   * @param seed	the seed for the order of the training data
+   * @param ratio	the ratios of the splits
+   * @return		the splits
+   */
+  public static IndexedDataset[] orderedSplit(RandomAccessDataset dataset, int batchSize, long seed, int... ratio) {
+    int[]	rows;
+    int		i;
+
+    rows = new int[Math.toIntExact(dataset.size())];
+    for (i = 0; i < rows.length; i++)
+      rows[i] = i;
+
+    return splitRows(dataset, rows, batchSize, seed, ratio);
+  }
+
+  /**
+   * Randomly splits the rows of the dataset according to the ratios, with
+   * each split receiving the same proportion of the rows of every stratum.
+   * The first split (the training data) gets sampled in random order, the
+   * others in order.
+   *
+   * @param dataset	the dataset to split
+   * @param strata	the stratum of each row of the dataset (0-based)
+   * @param batchSize	the mini-batch size
+   * @param seed	the seed for the split and the order of the training data
+   * @param ratio	the ratios of the splits
+   * @return		the splits
+   */
+  public static IndexedDataset[] stratifiedSplit(RandomAccessDataset dataset, int[] strata, int batchSize, long seed, int... ratio) {
+    IndexedDataset[]	result;
+    int[]		permutation;
+    int[]		counts;
+    int[][]		members;
+    int[][]		splits;
+    int[][]		rows;
+    int[]		offsets;
+    int			numStrata;
+    int			i;
+    int			n;
+
+    if (strata.length != dataset.size())
+      throw new IllegalArgumentException("Number of strata and rows differ: " + strata.length + " != " + dataset.size());
+
+    numStrata = 0;
+    for (i = 0; i < strata.length; i++)
+      numStrata = Math.max(numStrata, strata[i] + 1);
+
+    // group the rows by stratum, in random order
+    permutation = PermutationSampler.permutation(strata.length, seed);
+    counts      = new int[numStrata];
+    for (i = 0; i < strata.length; i++)
+      counts[strata[i]]++;
+    members = new int[numStrata][];
+    for (i = 0; i < numStrata; i++)
+      members[i] = new int[counts[i]];
+    counts = new int[numStrata];
+    for (i = 0; i < permutation.length; i++)
+      members[strata[permutation[i]]][counts[strata[permutation[i]]]++] = permutation[i];
+
+    // split each stratum and concatenate the chunks
+    rows    = new int[ratio.length][strata.length];
+    offsets = new int[ratio.length];
+    for (i = 0; i < numStrata; i++) {
+      splits = chunks(members[i], ratio);
+      for (n = 0; n < ratio.length; n++) {
+	System.arraycopy(splits[n], 0, rows[n], offsets[n], splits[n].length);
+	offsets[n] += splits[n].length;
+      }
+    }
+
+    result = new IndexedDataset[ratio.length];
+    for (n = 0; n < ratio.length; n++) {
+      if (n == 0)
+	result[n] = shuffled(dataset, Arrays.copyOf(rows[n], offsets[n]), batchSize, seed + 1);
+      else
+	result[n] = sequential(dataset, Arrays.copyOf(rows[n], offsets[n]), batchSize);
+    }
+
+    return result;
+  }
+
+  /** Builder for the base class. */
+  protected static class Builder
+    extends BaseBuilder<Builder> {
+
+    /** {@inheritDoc} */
+    @Override
+    protected Builder self() {
+      return this;
+    }
+  }
+}
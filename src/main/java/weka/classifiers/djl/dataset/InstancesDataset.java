@@ -6,10 +6,21 @@
 package weka.classifiers.djl.dataset;
 
 import ai.djl.basicdataset.tabular.TabularDataset;
+import ai.djl.basicdataset.tabular.utils.DynamicBuffer;
+import ai.djl.basicdataset.tabular.utils.Feature;
+import ai.djl.basicdataset.tabular.utils.PreparedFeaturizer;
+import ai.djl.ndarray.NDArray;
+import ai.djl.ndarray.NDList;
+import ai.djl.ndarray.NDManager;
+import ai.djl.ndarray.types.Shape;
+import ai.djl.nn.Block;
+import ai.djl.training.dataset.Record;
 import ai.djl.util.Progress;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import weka.classifiers.djl.block.PreprocessingBlock;
+import weka.core.Attribute;
 import weka.core.Instance;
 import weka.core.Instances;
 
@@ -20,9 +31,14 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
+import java.nio.FloatBuffer;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -33,18 +49,440 @@ import java.util.Set;
  * and the epoch time is stored as NUMERIC string.
  * STRING attributes can be treated as NOMINAL ones.
  * Ignored columns, explicit or via regexps, should be set first.
+ * When preparing the dataset, all rows get featurized once and kept in
+ * primitive buffers, avoiding the string conversion of cells in every epoch.
+ * With fused preprocessing, the features are only stored as raw values
+ * (numeric value or index in vocabulary for nominal ones) and the statistics
+ * for normalization/one-hot encoding, computed in a single parallel pass
+ * (see {@link InstancesStatistics}), get stored in the JSON structure instead. The network then has to get
+ * wrapped with the block obtained from {@link #newPreprocessingBlock()}.
+ * Nominal features with large vocabularies can be mapped onto learned
+ * embeddings instead of getting one-hot encoded (see
+ * {@link InstancesBuilder#embeddingThreshold(int)}).
+ * Missing values in the features get imputed with statistics of the
+ * training data: the mean/most frequent label is stored in the JSON
+ * structure and used for the cells fed into the featurizers, with fused
+ * preprocessing the network imputes them (optionally adding indicator
+ * columns, see {@link InstancesBuilder#missingIndicators()}).
+ * Besides the class attribute, further numeric attributes can be used as
+ * labels (see {@link InstancesBuilder#addMatchingLabels(String...)}), e.g.,
+ * for predicting multiple targets with a single network.
+ * For sparse data, the raw features can be stored in compressed sparse row
+ * format, only visiting the stored values of the instances; rows get
+ * densified when they are retrieved.
  *
  * @author fracpete (fracpete at waikato dot ac dot nz)
  */
 public class InstancesDataset extends TabularDataset {
 
+  /** the number of rows to featurize with the same temporary manager. */
+  protected static final int FEATURIZE_CHUNK_SIZE = 1024;
+
   protected Instances data;
   protected JsonObject structure;
 
+  /** the featurized features (row-major: rows x feature size). */
+  protected float[] featureBuffer;
+
+  /** the featurized labels (row-major: rows x label size). */
+  protected float[] labelBuffer;
+
+  /** whether the dataset has been prepared already. */
+  protected boolean prepared;
+
+  /** whether the featurizers are shared with another (prepared) dataset. */
+  protected boolean sharedFeaturizers;
+
+  /** whether to use fused preprocessing. */
+  protected boolean fusedPreprocessing;
+
+  /** the means of the features (fused preprocessing). */
+  protected float[] means;
+
+  /** the standard deviations of the features (fused preprocessing). */
+  protected float[] stdDevs;
+
+  /** the vocabularies of the features, null for numeric ones (fused preprocessing). */
+  protected List<Map<String,Integer>> vocabularies;
+
+  /** the embedding sizes of the features, 0 for one-hot encoding or numeric ones (fused preprocessing). */
+  protected int[] embeddingSizes;
+
+  /** whether to append missing value indicators for the features (fused preprocessing). */
+  protected boolean[] missingIndicators;
+
+  /** the imputation values (cells) for missing values, per attribute name. */
+  protected Map<String,String> imputations;
+
+  /** whether to store the features in compressed sparse row format (fused preprocessing). */
+  protected boolean sparseStorage;
+
+  /** the offsets of the rows in the sparse features (rows + 1). */
+  protected int[] featureRowOffsets;
+
+  /** the feature positions of the non-zero values. */
+  protected int[] featureColumns;
+
+  /** the non-zero values. */
+  protected float[] featureValues;
+
   protected InstancesDataset(InstancesBuilder<?> builder) {
     super(builder);
     data = builder.data;
     structure = builder.toJson();
+    fusedPreprocessing = builder.fusedPreprocessing;
+    sparseStorage = builder.sparseStorage;
+    if (fusedPreprocessing)
+      initPreprocessing();
+    else
+      initImputation();
+  }
+
+  /**
+   * Initializes the imputation values for missing values from the structure.
+   */
+  protected void initImputation() {
+    JsonObject	imputation;
+
+    imputations = new HashMap<>();
+    if (!structure.has("imputation"))
+      return;
+    imputation = structure.getAsJsonObject("imputation");
+    for (String name: imputation.keySet())
+      imputations.put(name, imputation.get(name).getAsString());
+  }
+
+  /**
+   * Initializes the fused preprocessing from the statistics in the structure.
+   */
+  protected void initPreprocessing() {
+    JsonArray			stats;
+    JsonObject			stat;
+    JsonArray			vocabulary;
+    Map<String,Integer>		map;
+    int				i;
+    int				n;
+
+    stats = structure.getAsJsonArray("preprocessing");
+    if (stats.size() != getFeatures().size())
+      throw new IllegalStateException("Number of preprocessing statistics and features differ: " + stats.size() + " != " + getFeatures().size());
+
+    means             = new float[stats.size()];
+    stdDevs           = new float[stats.size()];
+    embeddingSizes    = new int[stats.size()];
+    missingIndicators = new boolean[stats.size()];
+    vocabularies      = new ArrayList<>();
+    for (i = 0; i < stats.size(); i++) {
+      stat = stats.get(i).getAsJsonObject();
+      missingIndicators[i] = stat.has("indicator") && stat.get("indicator").getAsBoolean();
+      if (stat.has("vocabulary")) {
+	vocabulary = stat.getAsJsonArray("vocabulary");
+	map        = new HashMap<>();
+	for (n = 0; n < vocabulary.size(); n++)
+	  map.put(vocabulary.get(n).getAsString(), n);
+	vocabularies.add(map);
+	stdDevs[i] = 1.0f;
+	if (stat.has("embedding"))
+	  embeddingSizes[i] = stat.get("embedding").getAsInt();
+      }
+      else {
+	vocabularies.add(null);
+	means[i]   = stat.get("mean").getAsFloat();
+	stdDevs[i] = stat.get("std").getAsFloat();
+      }
+    }
+  }
+
+  /**
+   * Returns whether fused preprocessing is used, i.e., the features are raw
+   * values and the network needs to get wrapped with the block from
+   * {@link #newPreprocessingBlock()}.
+   *
+   * @return		true if fused preprocessing
+   */
+  public boolean isFusedPreprocessing() {
+    return fusedPreprocessing;
+  }
+
+  /**
+   * Returns the number of values per row that get fed into the network.
+   * Differs from {@link #getFeatureSize()} with fused preprocessing, as
+   * nominal features are a single index then (either one-hot encoded or
+   * embedded by the network).
+   *
+   * @return		the number of input values
+   */
+  public int getInputSize() {
+    if (fusedPreprocessing)
+      return getFeatures().size();
+    else
+      return getFeatureSize();
+  }
+
+  /**
+   * Returns the number of values that the network outputs: one for numeric
+   * labels and one per class label for nominal ones.
+   *
+   * @return		the number of outputs
+   */
+  @Override
+  public int getLabelSize() {
+    int		result;
+    Attribute	att;
+
+    result = 0;
+    for (Feature label: getLabels()) {
+      att = data.attribute(label.getName());
+      if (att.isNumeric())
+	result++;
+      else
+	result += att.numValues();
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns the number of values per row that get stored for the labels:
+   * the value for numeric labels and the index of the class label for
+   * nominal ones.
+   *
+   * @return		the number of stored values
+   */
+  public int getStoredLabelSize() {
+    return getLabels().size();
+  }
+
+  /**
+   * Returns the number of features that the network operates on, i.e.,
+   * the output of the preprocessing block with fused preprocessing.
+   *
+   * @return		the number of features
+   */
+  @Override
+  public int getFeatureSize() {
+    int		result;
+    int		i;
+
+    if (!fusedPreprocessing)
+      return super.getFeatureSize();
+
+    result = 0;
+    for (i = 0; i < vocabularies.size(); i++) {
+      if (vocabularies.get(i) == null)
+	result++;
+      else if ((embeddingSizes[i] > 0) && (vocabularies.get(i).size() > 0))
+	result += embeddingSizes[i];
+      else
+	result += Math.max(1, vocabularies.get(i).size());
+      if (missingIndicators[i])
+	result++;
+    }
+
+    return result;
+  }
+
+  /**
+   * Creates the block that performs the fused preprocessing.
+   *
+   * @return		the block
+   */
+  public Block newPreprocessingBlock() {
+    int[]	sizes;
+    int		i;
+
+    if (!fusedPreprocessing)
+      throw new IllegalStateException("Dataset does not use fused preprocessing!");
+
+    sizes = new int[vocabularies.size()];
+    for (i = 0; i < sizes.length; i++)
+      sizes[i] = (vocabularies.get(i) == null) ? 0 : vocabularies.get(i).size();
+
+    return new PreprocessingBlock(means, stdDevs, sizes, embeddingSizes, missingIndicators);
+  }
+
+  /**
+   * Returns whether the features are stored in compressed sparse row format.
+   *
+   * @return		true if sparse storage
+   */
+  public boolean isSparseStorage() {
+    return sparseStorage;
+  }
+
+  /**
+   * Determines the positions of the attributes among the features. When
+   * encoding many instances of the same data, determine them once and use
+   * {@link #encodeFeatures(Instance, int[], float[], int)}.
+   *
+   * @param header	the data to determine the positions for
+   * @return		the position for each attribute, -1 if not a feature
+   */
+  public int[] featurePositions(Instances header) {
+    int[]	result;
+    int		i;
+
+    result = new int[header.numAttributes()];
+    Arrays.fill(result, -1);
+    for (i = 0; i < getFeatures().size(); i++)
+      result[header.attribute(getFeatures().get(i).getName()).index()] = i;
+
+    return result;
+  }
+
+  /**
+   * Determines the attribute indices of the labels in the data.
+   *
+   * @param header	the data to determine the indices for
+   * @return		the indices
+   */
+  protected int[] labelIndices(Instances header) {
+    int[]	result;
+    int		i;
+
+    result = new int[getLabels().size()];
+    for (i = 0; i < result.length; i++)
+      result[i] = header.attribute(getLabels().get(i).getName()).index();
+
+    return result;
+  }
+
+  /**
+   * Encodes the labels of the instance: numeric values are used as is,
+   * nominal ones as index of the label. Missing values become NaN.
+   *
+   * @param instance	the instance to encode
+   * @param indices	the attribute indices of the labels
+   * @param buffer	the buffer to store the values in
+   * @param offset	the offset in the buffer
+   */
+  protected void encodeLabels(Instance instance, int[] indices, float[] buffer, int offset) {
+    int		i;
+
+    for (i = 0; i < indices.length; i++)
+      buffer[offset + i] = (float) instance.value(indices[i]);
+  }
+
+  /**
+   * Returns the cell of the instance as string, as expected by the featurizers.
+   * Missing values get replaced with the imputation value of the attribute
+   * (if available).
+   *
+   * @param instance	the instance to get the cell from
+   * @param index	the attribute index
+   * @return		the cell
+   */
+  protected String toCell(Instance instance, int index) {
+    if ((imputations != null) && instance.isMissing(index) && imputations.containsKey(instance.attribute(index).name()))
+      return imputations.get(instance.attribute(index).name());
+    if (instance.attribute(index).isNumeric())
+      return "" + instance.value(index);
+    else
+      return instance.stringValue(index);
+  }
+
+  /**
+   * Encodes a stored value of the instance as raw value for fused
+   * preprocessing: numeric values are used as is, nominal ones get turned
+   * into the index in the vocabulary (-1 if unknown). Missing values become NaN.
+   *
+   * @param feature	the position of the feature
+   * @param instance	the instance to encode
+   * @param n		the position of the value in the instance (see {@link Instance#valueSparse(int)})
+   * @return		the raw value
+   */
+  protected float encodeValue(int feature, Instance instance, int n) {
+    double	value;
+
+    value = instance.valueSparse(n);
+    if (Double.isNaN(value))
+      return Float.NaN;
+    if (vocabularies.get(feature) == null)
+      return (float) value;
+    else
+      return vocabularies.get(feature).getOrDefault(instance.attributeSparse(n).value((int) value), -1);
+  }
+
+  /**
+   * Encodes the features of the instance as raw values for fused preprocessing.
+   * Only the stored values of the instance get visited, i.e., the buffer
+   * must be initialized with zeros.
+   *
+   * @param instance	the instance to encode
+   * @param positions	the positions of the attributes among the features
+   * @param buffer	the buffer to store the values in
+   * @param offset	the offset in the buffer
+   */
+  protected void encodeRawFeatures(Instance instance, int[] positions, float[] buffer, int offset) {
+    int		n;
+    int		feature;
+
+    for (n = 0; n < instance.numValues(); n++) {
+      feature = positions[instance.index(n)];
+      if (feature > -1)
+	buffer[offset + feature] = encodeValue(feature, instance, n);
+    }
+  }
+
+  /**
+   * Encodes the features of the instance as they get fed into the network,
+   * i.e., raw values with fused preprocessing or the output of the featurizers
+   * otherwise.
+   *
+   * @param instance	the instance to encode (must have access to its dataset)
+   * @return		the encoded features
+   */
+  public float[] encodeFeatures(Instance instance) {
+    float[]	result;
+
+    result = new float[getInputSize()];
+    encodeFeatures(instance, result, 0);
+
+    return result;
+  }
+
+  /**
+   * Encodes the features of the instance as they get fed into the network
+   * into the buffer, overwriting the {@link #getInputSize()} values starting
+   * at the offset. With fused preprocessing, no objects get allocated.
+   *
+   * @param instance	the instance to encode (must have access to its dataset)
+   * @param buffer	the buffer to store the values in
+   * @param offset	the offset in the buffer
+   */
+  public void encodeFeatures(Instance instance, float[] buffer, int offset) {
+    encodeFeatures(instance, fusedPreprocessing ? featurePositions(instance.dataset()) : null, buffer, offset);
+  }
+
+  /**
+   * Encodes the features of the instance as they get fed into the network
+   * into the buffer, overwriting the {@link #getInputSize()} values starting
+   * at the offset. Uses the attribute positions determined beforehand via
+   * {@link #featurePositions(Instances)} for the dataset of the instance,
+   * i.e., with fused preprocessing no objects get allocated and no locking
+   * is involved.
+   *
+   * @param instance	the instance to encode (must have access to its dataset)
+   * @param positions	the positions of the attributes among the features, only required with fused preprocessing
+   * @param buffer	the buffer to store the values in
+   * @param offset	the offset in the buffer
+   */
+  public void encodeFeatures(Instance instance, int[] positions, float[] buffer, int offset) {
+    DynamicBuffer	dynamic;
+    FloatBuffer		floats;
+
+    if (fusedPreprocessing) {
+      Arrays.fill(buffer, offset, offset + getInputSize(), 0.0f);
+      encodeRawFeatures(instance, positions, buffer, offset);
+    }
+    else {
+      dynamic = new DynamicBuffer();
+      for (Feature feature: getFeatures())
+	feature.getFeaturizer().featurize(dynamic, toCell(instance, instance.dataset().attribute(feature.getName()).index()));
+      floats = dynamic.getBuffer();
+      floats.rewind();
+      floats.get(buffer, offset, dynamic.getLength());
+    }
   }
 
   /** {@inheritDoc} */
@@ -52,10 +490,7 @@ public class InstancesDataset extends TabularDataset {
   public String getCell(long rowIndex, String featureName) {
     Instance record = data.instance(Math.toIntExact(rowIndex));
     int index = data.attribute(featureName).index();
-    if (data.attribute(index).isNumeric())
-      return "" + record.value(index);
-    else
-      return record.stringValue(index);
+    return toCell(record, index);
   }
 
   /** {@inheritDoc} */
@@ -66,8 +501,328 @@ public class InstancesDataset extends TabularDataset {
 
   /** {@inheritDoc} */
   @Override
-  public void prepare(Progress progress) throws IOException {
-    prepareFeaturizers();
+  public Record get(NDManager manager, long index) {
+    int		row;
+    int		featureSize;
+    int		labelSize;
+    NDArray	features;
+    NDArray	labels;
+
+    if (labelBuffer == null)
+      return super.get(manager, index);
+
+    row         = Math.toIntExact(index);
+    featureSize = getInputSize();
+    labelSize   = getStoredLabelSize();
+    if (sparseStorage)
+      features  = manager.create(densify(row, new float[featureSize], 0), new Shape(featureSize));
+    else
+      features  = manager.create(FloatBuffer.wrap(featureBuffer, row * featureSize, featureSize).slice(), new Shape(featureSize));
+    labels      = manager.create(FloatBuffer.wrap(labelBuffer, row * labelSize, labelSize).slice(), new Shape(labelSize));
+
+    return new Record(new NDList(features), new NDList(labels));
+  }
+
+  /**
+   * Returns the features of the specified rows as a single batch.
+   * Requires the dataset to be prepared.
+   *
+   * @param manager	the manager to create the array with
+   * @param rows	the rows to retrieve
+   * @return		the batch (rows x feature size)
+   */
+  public NDArray getFeatureBatch(NDManager manager, List<Long> rows) {
+    int		featureSize;
+    float[]	batch;
+    int		i;
+
+    if (labelBuffer == null)
+      throw new IllegalStateException("Dataset has not been prepared!");
+
+    featureSize = getInputSize();
+    batch       = new float[rows.size() * featureSize];
+    for (i = 0; i < rows.size(); i++) {
+      if (sparseStorage)
+	densify(Math.toIntExact(rows.get(i)), batch, i * featureSize);
+      else
+	System.arraycopy(featureBuffer, Math.toIntExact(rows.get(i)) * featureSize, batch, i * featureSize, featureSize);
+    }
+
+    return manager.create(batch, new Shape(rows.size(), featureSize));
+  }
+
+  /**
+   * Copies the non-zero values of the sparse row into the (zeroed) buffer.
+   *
+   * @param row		the row to copy
+   * @param buffer	the buffer to copy into
+   * @param offset	the offset in the buffer
+   * @return		the buffer
+   */
+  protected float[] densify(int row, float[] buffer, int offset) {
+    int		i;
+
+    for (i = featureRowOffsets[row]; i < featureRowOffsets[row + 1]; i++)
+      buffer[offset + featureColumns[i]] = featureValues[i];
+
+    return buffer;
+  }
+
+  /**
+   * Featurizes all rows once and stores the features in compressed sparse
+   * row format (raw values), only visiting the stored values of the
+   * instances. The labels get stored densely.
+   */
+  protected void featurizeSparse() {
+    int		rows;
+    int		labelSize;
+    int[]	positions;
+    int[]	offsets;
+    int[]	columns;
+    float[]	values;
+    float[]	labels;
+    int[]	labelIndices;
+    int		count;
+    int		i;
+    int		n;
+    int		feature;
+    float	value;
+    Instance	inst;
+
+    rows         = Math.toIntExact(availableSize());
+    labelSize    = getStoredLabelSize();
+    positions    = featurePositions(data);
+    labelIndices = labelIndices(data);
+    offsets      = new int[rows + 1];
+    columns      = new int[Math.max(16, rows)];
+    values       = new float[columns.length];
+    labels       = new float[rows * labelSize];
+    count        = 0;
+
+    for (i = 0; i < rows; i++) {
+      inst = data.instance(i);
+      for (n = 0; n < inst.numValues(); n++) {
+	feature = positions[inst.index(n)];
+	if (feature == -1)
+	  continue;
+	value = encodeValue(feature, inst, n);
+	if (value == 0.0f)
+	  continue;
+	if (count == columns.length) {
+	  columns = Arrays.copyOf(columns, columns.length * 2);
+	  values  = Arrays.copyOf(values, values.length * 2);
+	}
+	columns[count] = feature;
+	values[count]  = value;
+	count++;
+      }
+      offsets[i + 1] = count;
+      encodeLabels(inst, labelIndices, labels, i * labelSize);
+    }
+
+    featureRowOffsets = offsets;
+    featureColumns    = Arrays.copyOf(columns, count);
+    featureValues     = Arrays.copyOf(values, count);
+    labelBuffer       = labels;
+  }
+
+  /**
+   * Featurizes all rows once and stores them in the primitive buffers.
+   * With fused preprocessing, the features get stored as raw values.
+   * The labels get encoded directly (see {@link #encodeLabels(Instance, int[], float[], int)}).
+   */
+  protected void featurize() {
+    int		rows;
+    int		featureSize;
+    int		labelSize;
+    float[]	features;
+    float[]	labels;
+    int		start;
+    int		i;
+    int[]	positions;
+    int[]	labelIndices;
+
+    if (sparseStorage) {
+      featurizeSparse();
+      return;
+    }
+
+    rows        = Math.toIntExact(availableSize());
+    featureSize = getInputSize();
+    labelSize    = getStoredLabelSize();
+    features     = new float[rows * featureSize];
+    labels       = new float[rows * labelSize];
+    positions    = fusedPreprocessing ? featurePositions(data) : null;
+    labelIndices = labelIndices(data);
+
+    try (NDManager manager = NDManager.newBaseManager()) {
+      for (start = 0; start < rows; start += FEATURIZE_CHUNK_SIZE) {
+	try (NDManager scope = manager.newSubManager()) {
+	  for (i = start; (i < rows) && (i < start + FEATURIZE_CHUNK_SIZE); i++) {
+	    if (fusedPreprocessing)
+	      encodeRawFeatures(data.instance(i), positions, features, i * featureSize);
+	    else
+	      System.arraycopy(getRowFeatures(scope, i, getFeatures()).singletonOrThrow().toFloatArray(), 0, features, i * featureSize, featureSize);
+	    encodeLabels(data.instance(i), labelIndices, labels, i * labelSize);
+	  }
+	}
+      }
+    }
+
+    featureBuffer = features;
+    labelBuffer   = labels;
+  }
+
+  /**
+   * Returns whether the dataset has been prepared (and featurized) already.
+   *
+   * @return		true if prepared
+   */
+  public boolean isPrepared() {
+    return prepared;
+  }
+
+  /**
+   * Prepares the featurizers that need to see the data (e.g., for
+   * normalization), in parallel across the columns. The cells get read
+   * directly from the underlying data. With fused preprocessing, only the
+   * label featurizers require preparation.
+   */
+  @Override
+  public void prepareFeaturizers() {
+    List<Feature>	selected;
+
+    selected = new ArrayList<>();
+    if (!fusedPreprocessing)
+      selected.addAll(getFeatures());
+    selected.addAll(getLabels());
+
+    selected.parallelStream()
+      .filter(f -> f.getFeaturizer() instanceof PreparedFeaturizer)
+      .forEach(f -> ((PreparedFeaturizer) f.getFeaturizer()).prepare(getColumn(f.getName())));
+  }
+
+  /**
+   * Returns the cells of the specified column as strings (see {@link #getCell(long, String)}).
+   *
+   * @param featureName	the name of the column
+   * @return		the cells
+   */
+  protected List<String> getColumn(String featureName) {
+    List<String>	result;
+    int			index;
+    int			i;
+
+    index  = data.attribute(featureName).index();
+    result = new ArrayList<>(data.numInstances());
+    for (i = 0; i < data.numInstances(); i++)
+      result.add(toCell(data.instance(i), index));
+
+    return result;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public synchronized void prepare(Progress progress) throws IOException {
+    if (prepared)
+      return;
+    if (!sharedFeaturizers)
+      prepareFeaturizers();
+    featurize();
+    prepared = true;
+  }
+
+  /**
+   * Creates a dataset for the data and structure that reuses the featurizers
+   * of this dataset.
+   *
+   * @param data	the data to wrap (same structure as the data of this dataset)
+   * @param structure	the structure of the new dataset
+   * @param batchSize	the mini-batch size
+   * @return		the new dataset
+   */
+  protected InstancesDataset derive(Instances data, JsonObject structure, int batchSize) {
+    InstancesDataset	result;
+
+    result = builder()
+	       .setSampling(batchSize, true)
+	       .data(data)
+	       .fromJson(structure)
+	       .build();
+    result.features          = features;
+    result.labels            = labels;
+    result.sharedFeaturizers = true;
+
+    return result;
+  }
+
+  /**
+   * Creates a dataset for further data with the same structure that reuses
+   * the featurizers, statistics and imputation values of this dataset, i.e.,
+   * the rows get encoded the same way as the ones of this dataset instead of
+   * fitting the featurizers on the new data (e.g., when fine-tuning with a
+   * few rows). Preparing the new dataset only featurizes its rows.
+   *
+   * @param data	the data to wrap (same structure as the data of this dataset)
+   * @param batchSize	the mini-batch size
+   * @return		the new dataset
+   */
+  public InstancesDataset withData(Instances data, int batchSize) {
+    return derive(data, structure, batchSize);
+  }
+
+  /**
+   * Creates a dataset for the same data that uses the statistics (fused
+   * preprocessing, imputation values) of the provided structure instead,
+   * e.g., computed on the training rows of a cross-validation fold only.
+   * If the featurized rows do not depend on the statistics, i.e., with fused
+   * preprocessing (raw values) or without missing values in the features,
+   * they get shared with this dataset (which gets prepared if necessary);
+   * otherwise, preparing the new dataset featurizes the rows again.
+   *
+   * @param structure	the structure with the statistics (same features/labels as this dataset)
+   * @param batchSize	the mini-batch size
+   * @return		the new dataset
+   * @throws IOException	if preparing this dataset fails
+   */
+  public InstancesDataset withStatistics(JsonObject structure, int batchSize) throws IOException {
+    InstancesDataset	result;
+
+    result = derive(data, structure, batchSize);
+    if (fusedPreprocessing || !hasMissingFeatures()) {
+      prepare(null);
+      result.featureBuffer     = featureBuffer;
+      result.labelBuffer       = labelBuffer;
+      result.featureRowOffsets = featureRowOffsets;
+      result.featureColumns    = featureColumns;
+      result.featureValues     = featureValues;
+      result.prepared          = true;
+    }
+
+    return result;
+  }
+
+  /**
+   * Checks whether any of the features has missing values.
+   *
+   * @return		true if missing values present
+   */
+  protected boolean hasMissingFeatures() {
+    int[]	positions;
+    Instance	inst;
+    int		i;
+    int		n;
+
+    positions = featurePositions(data);
+    for (i = 0; i < data.numInstances(); i++) {
+      inst = data.instance(i);
+      for (n = 0; n < inst.numValues(); n++) {
+	if ((positions[inst.index(n)] > -1) && inst.isMissingSparse(n))
+	  return true;
+      }
+    }
+
+    return false;
   }
 
   /**
@@ -137,6 +892,16 @@ public class InstancesDataset extends TabularDataset {
 
     protected boolean dateColumnsAsNumeric;
 
+    protected boolean fusedPreprocessing;
+
+    protected boolean sparseStorage;
+
+    protected boolean missingIndicators;
+
+    protected int embeddingThreshold;
+
+    protected int embeddingSize;
+
     protected JsonObject structure;
 
     /**
@@ -151,10 +916,20 @@ public class InstancesDataset extends TabularDataset {
       matchingFeaturesAdded  = new HashSet<>();
       stringColumnsAsNominal = false;
       dateColumnsAsNumeric   = false;
+      fusedPreprocessing     = false;
+      sparseStorage          = false;
+      missingIndicators      = false;
+      embeddingThreshold     = 0;
+      embeddingSize          = 0;
       structure              = new JsonObject();
       structure.add("options", new JsonObject());
       structure.get("options").getAsJsonObject().addProperty("dateColumnsAsNumeric", false);
       structure.get("options").getAsJsonObject().addProperty("stringColumnsAsNominal", false);
+      structure.get("options").getAsJsonObject().addProperty("fusedPreprocessing", false);
+      structure.get("options").getAsJsonObject().addProperty("sparseStorage", false);
+      structure.get("options").getAsJsonObject().addProperty("missingIndicators", false);
+      structure.get("options").getAsJsonObject().addProperty("embeddingThreshold", 0);
+      structure.get("options").getAsJsonObject().addProperty("embeddingSize", 0);
       structure.add("features", new JsonArray());
       structure.add("labels", new JsonArray());
       structure.addProperty("classIndex", -1);
@@ -211,6 +986,86 @@ public class InstancesDataset extends TabularDataset {
       return self();
     }
 
+    /**
+     * Sets whether to use fused preprocessing, i.e., only storing raw values
+     * and leaving normalization/one-hot encoding to the network.
+     *
+     * @return this builder
+     */
+    public T fusedPreprocessing() {
+      fusedPreprocessing = true;
+      structure.get("options").getAsJsonObject().addProperty("fusedPreprocessing", true);
+      return self();
+    }
+
+    /**
+     * Sets whether to store the features in compressed sparse row format,
+     * i.e., memory is proportional to the number of non-zero values.
+     * Requires fused preprocessing.
+     *
+     * @return this builder
+     */
+    public T sparseStorage() {
+      sparseStorage = true;
+      structure.get("options").getAsJsonObject().addProperty("sparseStorage", true);
+      return self();
+    }
+
+    /**
+     * Sets whether to append an indicator column (1 if missing, 0 otherwise)
+     * for all features that had missing values in the training data.
+     * Requires fused preprocessing.
+     *
+     * @return this builder
+     */
+    public T missingIndicators() {
+      missingIndicators = true;
+      structure.get("options").getAsJsonObject().addProperty("missingIndicators", true);
+      return self();
+    }
+
+    /**
+     * Sets the number of labels above which nominal features get mapped onto
+     * a learned embedding rather than getting one-hot encoded.
+     * Requires fused preprocessing.
+     *
+     * @param threshold the threshold, 0 to always use one-hot encoding
+     * @return this builder
+     */
+    public T embeddingThreshold(int threshold) {
+      embeddingThreshold = threshold;
+      structure.get("options").getAsJsonObject().addProperty("embeddingThreshold", threshold);
+      return self();
+    }
+
+    /**
+     * Sets the size of the learned embeddings.
+     *
+     * @param size the size, 0 to determine it from the number of labels
+     *             (see {@link #determineEmbeddingSize(int)})
+     * @return this builder
+     */
+    public T embeddingSize(int size) {
+      embeddingSize = size;
+      structure.get("options").getAsJsonObject().addProperty("embeddingSize", size);
+      return self();
+    }
+
+    /**
+     * Determines the size of the embedding for a nominal feature with the
+     * specified number of labels: either the explicitly set size or
+     * half the number of labels, capped at 50.
+     *
+     * @param numLabels	the number of labels
+     * @return		the size
+     */
+    protected int determineEmbeddingSize(int numLabels) {
+      if (embeddingSize > 0)
+	return embeddingSize;
+      else
+	return Math.max(1, Math.min(50, (numLabels + 1) / 2));
+    }
+
     /**
      * Sets the index of the column to use as class attribute.
      *
@@ -221,6 +1076,7 @@ public class InstancesDataset extends TabularDataset {
       instancesRequired();
       classIndex = index;
       labels.clear();
+      structure.add("labels", new JsonArray());
       data.setClassIndex(index);
       if (classIndex > -1) {
 	addColumn(
@@ -444,6 +1300,41 @@ public class InstancesDataset extends TabularDataset {
       return self();
     }
 
+    /**
+     * Adds all numeric columns which names match the regular expression(s)
+     * as additional labels (after the class attribute), which then no longer
+     * get used as features. Must be called after the class attribute has been
+     * set and before adding the features.
+     * Skips ignored column names and the class attribute.
+     *
+     * @param regexp the regular expression(s) to apply
+     * @return this builder
+     */
+    public T addMatchingLabels(String... regexp) {
+      int			i;
+      String			colName;
+      InstancesAttributeType	colType;
+
+      instancesRequired();
+
+      for (String r: regexp) {
+	for (i = 0; i < data.numAttributes(); i++) {
+	  if (isClassColumn(i))
+	    continue;
+	  colName = data.attribute(i).name();
+	  colType = InstancesAttributeType.toType(data.attribute(i).type());
+	  if (!colName.matches(r))
+	    continue;
+	  if ((colType == InstancesAttributeType.NUMERIC) || ((colType == InstancesAttributeType.DATE) && dateColumnsAsNumeric)) {
+	    addColumn(colName, colType, true);
+	    addIgnoredColumn(colName);
+	  }
+	}
+      }
+
+      return self();
+    }
+
     /**
      * Builds the new {@link InstancesDataset}.
      *
@@ -451,9 +1342,138 @@ public class InstancesDataset extends TabularDataset {
      */
     public InstancesDataset build() {
       instancesRequired();
+      if (sparseStorage && !fusedPreprocessing)
+	throw new IllegalStateException("Sparse storage requires fused preprocessing!");
+      if ((embeddingThreshold > 0) && !fusedPreprocessing)
+	throw new IllegalStateException("Embeddings require fused preprocessing!");
+      if (missingIndicators && !fusedPreprocessing)
+	throw new IllegalStateException("Missing value indicators require fused preprocessing!");
+      if (fusedPreprocessing && !structure.has("preprocessing"))
+	computePreprocessing();
+      if (!fusedPreprocessing && !structure.has("imputation"))
+	computeImputation();
       return new InstancesDataset(this);
     }
 
+    /**
+     * Returns the attribute indices of the features.
+     *
+     * @return		the indices
+     */
+    protected int[] featureIndices() {
+      JsonArray		features;
+      int[]		result;
+      int		i;
+
+      features = structure.getAsJsonArray("features");
+      result   = new int[features.size()];
+      for (i = 0; i < result.length; i++)
+	result[i] = data.attribute(features.get(i).getAsJsonObject().get("name").getAsString()).index();
+
+      return result;
+    }
+
+    /**
+     * Computes the values for imputing missing values in the features
+     * (mean for numeric attributes, most frequent label for nominal ones)
+     * and stores them in the structure.
+     */
+    protected void computeImputation() {
+      int[]			indices;
+      InstancesStatistics	stats;
+      JsonObject		imputation;
+      Attribute			att;
+      long[]			counts;
+      double			mean;
+      int			i;
+      int			n;
+      int			mode;
+
+      indices    = featureIndices();
+      stats      = InstancesStatistics.compute(data, indices);
+      imputation = new JsonObject();
+      for (i = 0; i < indices.length; i++) {
+	att = data.attribute(indices[i]);
+	if (att.isNumeric()) {
+	  mean = stats.getMean(indices[i]);
+	  imputation.addProperty(att.name(), "" + (Double.isNaN(mean) ? 0.0 : mean));
+	}
+	else if (att.numValues() > 0) {
+	  counts = stats.getValueCounts(indices[i]);
+	  mode   = 0;
+	  for (n = 1; n < counts.length; n++) {
+	    if (counts[n] > counts[mode])
+	      mode = n;
+	  }
+	  imputation.addProperty(att.name(), att.value(mode));
+	}
+      }
+      structure.add("imputation", imputation);
+    }
+
+    /**
+     * Computes the statistics for the fused preprocessing of the features
+     * (single parallel pass over the rows) and stores them in the structure.
+     */
+    protected void computePreprocessing() {
+      int[]			indices;
+      InstancesStatistics	stats;
+      JsonArray			preprocessing;
+      int			i;
+
+      indices = featureIndices();
+      stats   = InstancesStatistics.compute(data, indices);
+
+      preprocessing = new JsonArray();
+      for (i = 0; i < indices.length; i++)
+	preprocessing.add(toPreprocessing(data.attribute(indices[i]), stats));
+      structure.add("preprocessing", preprocessing);
+    }
+
+    /**
+     * Generates the fused preprocessing information of a feature:
+     * mean/std for numeric attributes or the vocabulary for nominal ones
+     * (plus the embedding size if the vocabulary exceeds the threshold
+     * and whether to add a missing value indicator).
+     *
+     * @param att	the attribute to generate the information for
+     * @param stats	the statistics of the data
+     * @return		the information
+     */
+    protected JsonObject toPreprocessing(Attribute att, InstancesStatistics stats) {
+      JsonObject	result;
+      JsonArray		vocabulary;
+      double		mean;
+      double		std;
+      int		i;
+
+      result = new JsonObject();
+
+      if (missingIndicators && (stats.getMissing(att.index()) > 0))
+	result.addProperty("indicator", true);
+
+      if (att.isNumeric()) {
+	mean = stats.getMean(att.index());
+	std  = stats.getStdDev(att.index());
+	if (Double.isNaN(mean))
+	  mean = 0.0;
+	if ((std == 0.0) || Double.isNaN(std))
+	  std = 1.0;
+	result.addProperty("mean", mean);
+	result.addProperty("std", std);
+      }
+      else {
+	vocabulary = new JsonArray();
+	for (i = 0; i < att.numValues(); i++)
+	  vocabulary.add(att.value(i));
+	result.add("vocabulary", vocabulary);
+	if ((embeddingThreshold > 0) && (att.numValues() > embeddingThreshold))
+	  result.addProperty("embedding", determineEmbeddingSize(att.numValues()));
+      }
+
+      return result;
+    }
+
     /**
      * Returns the structure of the dataset as JSON.
      *
@@ -526,8 +1546,26 @@ public class InstancesDataset extends TabularDataset {
 	  dateColumnsAsNumeric();
 	if (options.has("stringColumnsAsNominal") && options.get("stringColumnsAsNominal").getAsBoolean())
 	  stringColumnsAsNominal();
+	if (options.has("fusedPreprocessing") && options.get("fusedPreprocessing").getAsBoolean())
+	  fusedPreprocessing();
+	if (options.has("sparseStorage") && options.get("sparseStorage").getAsBoolean())
+	  sparseStorage();
+	if (options.has("missingIndicators") && options.get("missingIndicators").getAsBoolean())
+	  missingIndicators();
+	if (options.has("embeddingThreshold"))
+	  embeddingThreshold(options.get("embeddingThreshold").getAsInt());
+	if (options.has("embeddingSize"))
+	  embeddingSize(options.get("embeddingSize").getAsInt());
       }
 
+      // statistics of fused preprocessing
+      if (structure.has("preprocessing"))
+	this.structure.add("preprocessing", structure.get("preprocessing").deepCopy());
+
+      // imputation values
+      if (structure.has("imputation"))
+	this.structure.add("imputation", structure.get("imputation").deepCopy());
+
       // features
       if (structure.has("features")) {
 	features = structure.getAsJsonArray("features");
@@ -538,20 +1576,23 @@ public class InstancesDataset extends TabularDataset {
 	}
       }
 
-      // labels
+      // classIndex
+      if (structure.has("classIndex"))
+	classIndex(structure.get("classIndex").getAsInt());
+
+      // additional labels
       if (structure.has("labels")) {
 	labels = structure.getAsJsonArray("labels");
 	for (i = 0; i < labels.size(); i++) {
 	  feature = labels.get(i).getAsJsonObject();
+	  if ((classIndex > -1) && feature.get("name").getAsString().equals(data.attribute(classIndex).name()))
+	    continue;
 	  type    = InstancesAttributeType.valueOf(feature.get("type").getAsString());
 	  addColumn(feature.get("name").getAsString(), type, true);
+	  addIgnoredColumn(feature.get("name").getAsString());
 	}
       }
 
-      // classIndex
-      if (structure.has("classIndex"))
-	classIndex(structure.get("classIndex").getAsInt());
-
       return self();
     }
   }
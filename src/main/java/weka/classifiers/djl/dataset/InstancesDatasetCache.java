@@ -0,0 +1,240 @@
+/*
+ * InstancesDatasetCache.java
+ * Copyright (C) 2025 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.classifiers.djl.dataset;
+
+import weka.core.Attribute;
+import weka.core.Instance;
+import weka.core.Instances;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide, reference-counted cache of prepared {@link InstancesDataset}
+ * objects, allowing concurrent trainings on the same data (e.g., several
+ * configurations in the Experimenter) to share a single featurized copy.
+ * <br>
+ * Datasets are keyed by the content of the {@link Instances} (a hash over
+ * header and values, with a full comparison if the objects differ) and the
+ * JSON structure of the builder, as well as the mini-batch size used for
+ * sampling. The first caller builds and prepares the dataset, concurrent
+ * callers with the same key wait for it. Every {@link #acquire} must be
+ * matched by a {@link #release}; once no more references exist, the dataset
+ * gets dropped from the cache.
+ * <br>
+ * Shared datasets must be treated as read-only.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class InstancesDatasetCache {
+
+  /**
+   * The key of a cached dataset.
+   */
+  protected static class Key {
+
+    /** the data. */
+    protected Instances data;
+
+    /** the hash of the data. */
+    protected int dataHash;
+
+    /** the structure of the dataset. */
+    protected String structure;
+
+    /** the mini-batch size. */
+    protected int batchSize;
+
+    /**
+     * Initializes the key.
+     *
+     * @param data	the data
+     * @param structure	the structure of the dataset
+     * @param batchSize	the mini-batch size
+     */
+    public Key(Instances data, String structure, int batchSize) {
+      this.data      = data;
+      this.dataHash  = contentHash(data);
+      this.structure = structure;
+      this.batchSize = batchSize;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int hashCode() {
+      return 31 * (31 * dataHash + structure.hashCode()) + batchSize;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean equals(Object obj) {
+      Key	other;
+
+      if (!(obj instanceof Key))
+	return false;
+      other = (Key) obj;
+      return (dataHash == other.dataHash)
+	       && (batchSize == other.batchSize)
+	       && structure.equals(other.structure)
+	       && sameContent(data, other.data);
+    }
+  }
+
+  /**
+   * A cached dataset and its reference count.
+   */
+  protected static class Entry {
+
+    /** the dataset, null until built. */
+    protected InstancesDataset dataset;
+
+    /** the number of references. */
+    protected int references;
+  }
+
+  /** the cached datasets. */
+  protected static final Map<Key,Entry> CACHE = new ConcurrentHashMap<>();
+
+  /**
+   * Computes a hash over the header and the values of the data.
+   *
+   * @param data	the data to hash
+   * @return		the hash
+   */
+  protected static int contentHash(Instances data) {
+    Attribute	att;
+    Instance	inst;
+    int		result;
+    int		i;
+    int		n;
+
+    result = data.numInstances();
+    result = 31 * result + data.classIndex();
+    for (i = 0; i < data.numAttributes(); i++) {
+      att    = data.attribute(i);
+      result = 31 * result + att.name().hashCode();
+      result = 31 * result + att.type();
+      result = 31 * result + att.numValues();
+    }
+    for (i = 0; i < data.numInstances(); i++) {
+      inst = data.instance(i);
+      for (n = 0; n < inst.numValues(); n++) {
+	if (inst.valueSparse(n) == 0.0)
+	  continue;
+	result = 31 * result + inst.index(n);
+	result = 31 * result + Double.hashCode(inst.valueSparse(n));
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Checks whether the two datasets have the same header and values.
+   *
+   * @param data1	the first dataset
+   * @param data2	the second dataset
+   * @return		true if the same
+   */
+  protected static boolean sameContent(Instances data1, Instances data2) {
+    Instance	inst1;
+    Instance	inst2;
+    int		i;
+    int		n;
+
+    if (data1 == data2)
+      return true;
+    if ((data1.numInstances() != data2.numInstances()) || (data1.classIndex() != data2.classIndex()))
+      return false;
+    if (!data1.equalHeaders(data2))
+      return false;
+
+    for (i = 0; i < data1.numInstances(); i++) {
+      inst1 = data1.instance(i);
+      inst2 = data2.instance(i);
+      for (n = 0; n < data1.numAttributes(); n++) {
+	if (Double.doubleToLongBits(inst1.value(n)) != Double.doubleToLongBits(inst2.value(n)))
+	  return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Returns the prepared dataset for the configured builder, building and
+   * preparing it if not yet cached. The builder must have the data and all
+   * features/labels set, but not been built yet.
+   *
+   * @param builder	the configured builder
+   * @param batchSize	the mini-batch size the builder samples with
+   * @return		the (shared) prepared dataset
+   * @throws Exception	if building or preparing fails
+   */
+  public static InstancesDataset acquire(InstancesDataset.InstancesBuilder<?> builder, int batchSize) throws Exception {
+    Key		key;
+    Entry	entry;
+
+    key   = new Key(builder.getData(), builder.toJson().toString(), batchSize);
+    entry = CACHE.compute(key, (k, e) -> {
+      if (e == null)
+	e = new Entry();
+      e.references++;
+      return e;
+    });
+
+    synchronized (entry) {
+      if (entry.dataset == null) {
+	try {
+	  entry.dataset = builder.build();
+	  entry.dataset.prepare();
+	}
+	catch (Exception e) {
+	  entry.dataset = null;
+	  release(key);
+	  throw e;
+	}
+      }
+      return entry.dataset;
+    }
+  }
+
+  /**
+   * Decrements the reference count for the key and removes the entry
+   * if no longer referenced.
+   *
+   * @param key		the key of the entry
+   */
+  protected static void release(Key key) {
+    CACHE.computeIfPresent(key, (k, e) -> (--e.references <= 0) ? null : e);
+  }
+
+  /**
+   * Releases a dataset obtained via {@link #acquire}. Datasets not managed
+   * by the cache get ignored.
+   *
+   * @param dataset	the dataset to release, can be null
+   */
+  public static void release(InstancesDataset dataset) {
+    if (dataset == null)
+      return;
+    for (Map.Entry<Key,Entry> e: CACHE.entrySet()) {
+      if (e.getValue().dataset == dataset) {
+	release(e.getKey());
+	return;
+      }
+    }
+  }
+
+  /**
+   * Returns the number of cached datasets.
+   *
+   * @return		the number of datasets
+   */
+  public static int size() {
+    return CACHE.size();
+  }
+}
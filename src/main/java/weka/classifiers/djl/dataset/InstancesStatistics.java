@@ -0,0 +1,386 @@
+/*
+ * InstancesStatistics.java
+ * Copyright (C) 2025 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.classifiers.djl.dataset;
+
+import weka.core.Attribute;
+import weka.core.Instance;
+import weka.core.Instances;
+
+import java.io.Serializable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Column statistics of an {@link Instances} object, computed in a single
+ * fork-join parallel pass over the rows: each task accumulates the rows of
+ * its range in primitive arrays (count, missing, min, max, mean, sum of
+ * squared deviations) and the partial results get merged pairwise.
+ * For nominal and string attributes, the value counts are determined instead.
+ * Only the stored values of instances get visited (i.e., the non-zero ones
+ * of a {@link weka.core.SparseInstance}), the implicit zeros get accounted
+ * for once per range.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class InstancesStatistics
+  implements Serializable {
+
+  private static final long serialVersionUID = 4386614069937011962L;
+
+  /** the number of rows below which a range is no longer split. */
+  public static final int MIN_ROWS_PER_TASK = 1024;
+
+  /** the attributes that statistics got computed for. */
+  protected int[] attributes;
+
+  /** the position of the attributes in the arrays (-1 if not present). */
+  protected int[] positions;
+
+  /** the number of non-missing values. */
+  protected long[] count;
+
+  /** the number of missing values. */
+  protected long[] missing;
+
+  /** the minimum values. */
+  protected double[] min;
+
+  /** the maximum values. */
+  protected double[] max;
+
+  /** the mean values. */
+  protected double[] mean;
+
+  /** the sum of squared deviations from the mean. */
+  protected double[] m2;
+
+  /** the value counts of nominal/string attributes (null for numeric ones). */
+  protected long[][] valueCounts;
+
+  /**
+   * Initializes empty statistics.
+   *
+   * @param data	the data the statistics are for
+   * @param attributes	the attribute indices to compute the statistics for
+   */
+  protected InstancesStatistics(Instances data, int[] attributes) {
+    Attribute	att;
+    int		i;
+
+    this.attributes = attributes;
+    count           = new long[attributes.length];
+    missing         = new long[attributes.length];
+    min             = new double[attributes.length];
+    max             = new double[attributes.length];
+    mean            = new double[attributes.length];
+    m2              = new double[attributes.length];
+    valueCounts     = new long[attributes.length][];
+    positions       = new int[data.numAttributes()];
+    for (i = 0; i < positions.length; i++)
+      positions[i] = -1;
+    for (i = 0; i < attributes.length; i++) {
+      positions[attributes[i]] = i;
+      min[i] = Double.POSITIVE_INFINITY;
+      max[i] = Double.NEGATIVE_INFINITY;
+      att    = data.attribute(attributes[i]);
+      if (att.isNominal() || att.isString())
+	valueCounts[i] = new long[att.numValues()];
+    }
+  }
+
+  /**
+   * Adds the values of the instance to the statistics.
+   *
+   * @param instance	the instance to add
+   */
+  protected void add(Instance instance) {
+    int		n;
+    int		i;
+    int		index;
+    double	value;
+    double	delta;
+
+    for (n = 0; n < instance.numValues(); n++) {
+      if (instance.index(n) >= positions.length)
+	continue;
+      i = positions[instance.index(n)];
+      if (i == -1)
+	continue;
+      value = instance.valueSparse(n);
+      if (Double.isNaN(value)) {
+	missing[i]++;
+	continue;
+      }
+      if (valueCounts[i] != null) {
+	index = (int) value;
+	if (index >= valueCounts[i].length) {  // string attributes can grow, treat as missing
+	  missing[i]++;
+	  continue;
+	}
+	valueCounts[i][index]++;
+      }
+      count[i]++;
+      if (value < min[i])
+	min[i] = value;
+      if (value > max[i])
+	max[i] = value;
+      delta    = value - mean[i];
+      mean[i] += delta / count[i];
+      m2[i]   += delta * (value - mean[i]);
+    }
+  }
+
+  /**
+   * Accounts for the zeros that were not stored in the instances,
+   * i.e., the values that were neither visited nor missing.
+   *
+   * @param numRows	the number of rows that were added
+   */
+  protected void addImplicitZeros(int numRows) {
+    int		i;
+    long	zeros;
+    long	total;
+
+    for (i = 0; i < attributes.length; i++) {
+      zeros = numRows - count[i] - missing[i];
+      if (zeros <= 0)
+	continue;
+      total    = count[i] + zeros;
+      m2[i]   += mean[i] * mean[i] * count[i] * zeros / total;
+      mean[i] -= mean[i] * zeros / total;
+      count[i] = total;
+      min[i]   = Math.min(min[i], 0.0);
+      max[i]   = Math.max(max[i], 0.0);
+      if ((valueCounts[i] != null) && (valueCounts[i].length > 0))
+	valueCounts[i][0] += zeros;
+    }
+  }
+
+  /**
+   * Merges the other statistics into these ones.
+   *
+   * @param other	the statistics to merge
+   */
+  protected void merge(InstancesStatistics other) {
+    int		i;
+    int		n;
+    long	total;
+    double	delta;
+
+    for (i = 0; i < attributes.length; i++) {
+      missing[i] += other.missing[i];
+      if (other.count[i] == 0)
+	continue;
+      total    = count[i] + other.count[i];
+      delta    = other.mean[i] - mean[i];
+      mean[i] += delta * other.count[i] / total;
+      m2[i]   += other.m2[i] + delta * delta * count[i] * other.count[i] / total;
+      count[i] = total;
+      min[i]   = Math.min(min[i], other.min[i]);
+      max[i]   = Math.max(max[i], other.max[i]);
+      if (valueCounts[i] != null) {
+	for (n = 0; n < valueCounts[i].length; n++)
+	  valueCounts[i][n] += other.valueCounts[i][n];
+      }
+    }
+  }
+
+  /**
+   * Returns the position of the attribute in the statistics.
+   *
+   * @param attribute	the attribute index
+   * @return		the position
+   * @throws IllegalArgumentException if no statistics computed for the attribute
+   */
+  protected int position(int attribute) {
+    if ((attribute < 0) || (attribute >= positions.length) || (positions[attribute] == -1))
+      throw new IllegalArgumentException("No statistics computed for attribute #" + (attribute + 1) + "!");
+    return positions[attribute];
+  }
+
+  /**
+   * Returns the number of non-missing values of the attribute.
+   *
+   * @param attribute	the attribute index
+   * @return		the count
+   */
+  public long getCount(int attribute) {
+    return count[position(attribute)];
+  }
+
+  /**
+   * Returns the number of missing values of the attribute.
+   *
+   * @param attribute	the attribute index
+   * @return		the count
+   */
+  public long getMissing(int attribute) {
+    return missing[position(attribute)];
+  }
+
+  /**
+   * Returns the minimum of the attribute.
+   *
+   * @param attribute	the attribute index
+   * @return		the minimum, NaN if no values
+   */
+  public double getMin(int attribute) {
+    int		pos;
+
+    pos = position(attribute);
+    return (count[pos] == 0) ? Double.NaN : min[pos];
+  }
+
+  /**
+   * Returns the maximum of the attribute.
+   *
+   * @param attribute	the attribute index
+   * @return		the maximum, NaN if no values
+   */
+  public double getMax(int attribute) {
+    int		pos;
+
+    pos = position(attribute);
+    return (count[pos] == 0) ? Double.NaN : max[pos];
+  }
+
+  /**
+   * Returns the mean of the attribute.
+   *
+   * @param attribute	the attribute index
+   * @return		the mean, NaN if no values
+   */
+  public double getMean(int attribute) {
+    int		pos;
+
+    pos = position(attribute);
+    return (count[pos] == 0) ? Double.NaN : mean[pos];
+  }
+
+  /**
+   * Returns the (sample) variance of the attribute.
+   *
+   * @param attribute	the attribute index
+   * @return		the variance, NaN if fewer than two values
+   */
+  public double getVariance(int attribute) {
+    int		pos;
+
+    pos = position(attribute);
+    return (count[pos] < 2) ? Double.NaN : m2[pos] / (count[pos] - 1);
+  }
+
+  /**
+   * Returns the (sample) standard deviation of the attribute.
+   *
+   * @param attribute	the attribute index
+   * @return		the standard deviation, NaN if fewer than two values
+   */
+  public double getStdDev(int attribute) {
+    return Math.sqrt(getVariance(attribute));
+  }
+
+  /**
+   * Returns the value counts of the nominal/string attribute.
+   *
+   * @param attribute	the attribute index
+   * @return		the counts, null if numeric attribute
+   */
+  public long[] getValueCounts(int attribute) {
+    return valueCounts[position(attribute)];
+  }
+
+  /**
+   * Computes the statistics for the specified attributes in parallel.
+   *
+   * @param data	the data to compute the statistics for
+   * @param attributes	the attribute indices
+   * @return		the statistics
+   */
+  public static InstancesStatistics compute(Instances data, int[] attributes) {
+    return ForkJoinPool.commonPool().invoke(new StatisticsTask(data, attributes.clone(), 0, data.numInstances()));
+  }
+
+  /**
+   * Computes the statistics for all attributes in parallel.
+   *
+   * @param data	the data to compute the statistics for
+   * @return		the statistics
+   */
+  public static InstancesStatistics compute(Instances data) {
+    int[]	attributes;
+    int		i;
+
+    attributes = new int[data.numAttributes()];
+    for (i = 0; i < attributes.length; i++)
+      attributes[i] = i;
+
+    return compute(data, attributes);
+  }
+
+  /**
+   * Computes the statistics for a range of rows, splitting it up if large enough.
+   */
+  protected static class StatisticsTask
+    extends RecursiveTask<InstancesStatistics> {
+
+    private static final long serialVersionUID = -1209460398167386071L;
+
+    /** the data. */
+    protected Instances data;
+
+    /** the attributes. */
+    protected int[] attributes;
+
+    /** the first row (incl). */
+    protected int from;
+
+    /** the last row (excl). */
+    protected int to;
+
+    /**
+     * Initializes the task.
+     *
+     * @param data		the data to use
+     * @param attributes	the attributes to compute the statistics for
+     * @param from		the first row (incl)
+     * @param to		the last row (excl)
+     */
+    protected StatisticsTask(Instances data, int[] attributes, int from, int to) {
+      this.data       = data;
+      this.attributes = attributes;
+      this.from       = from;
+      this.to         = to;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected InstancesStatistics compute() {
+      InstancesStatistics	result;
+      StatisticsTask		left;
+      StatisticsTask		right;
+      int			middle;
+      int			i;
+
+      if (to - from <= MIN_ROWS_PER_TASK) {
+	result = new InstancesStatistics(data, attributes);
+	for (i = from; i < to; i++)
+	  result.add(data.instance(i));
+	result.addImplicitZeros(to - from);
+	return result;
+      }
+
+      middle = from + (to - from) / 2;
+      left   = new StatisticsTask(data, attributes, from, middle);
+      right  = new StatisticsTask(data, attributes, middle, to);
+      left.fork();
+      result = right.compute();
+      result.merge(left.join());
+
+      return result;
+    }
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * PermutationSampler.java
+ * Copyright (C) 2025 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.classifiers.djl.dataset;
+
+import ai.djl.training.dataset.RandomAccessDataset;
+import ai.djl.training.dataset.Sampler;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+
+/**
+ * Samples the rows of a dataset in random order, using a permutation of the
+ * row indices (primitive int array) that gets regenerated for every epoch.
+ * The permutations are derived from a seeded {@link SplittableRandom}
+ * rather than DJL's global random number generator, i.e., the order only
+ * depends on the seed and the number of epochs sampled so far, regardless
+ * of any other training happening concurrently.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class PermutationSampler
+  implements Sampler.SubSampler {
+
+  /** the random number generator for the epochs. */
+  protected SplittableRandom random;
+
+  /**
+   * Initializes the sampler.
+   *
+   * @param seed	the seed for the permutations
+   */
+  public PermutationSampler(long seed) {
+    random = new SplittableRandom(seed);
+  }
+
+  /**
+   * Generates a random permutation of 0 to n-1 (Fisher-Yates).
+   *
+   * @param n		the number of indices
+   * @param random	the random number generator to use
+   * @return		the permutation
+   */
+  public static int[] permutation(int n, SplittableRandom random) {
+    int[]	result;
+    int		i;
+    int		j;
+    int		tmp;
+
+    result = new int[n];
+    for (i = 0; i < n; i++)
+      result[i] = i;
+    for (i = n - 1; i > 0; i--) {
+      j         = random.nextInt(i + 1);
+      tmp       = result[i];
+      result[i] = result[j];
+      result[j] = tmp;
+    }
+
+    return result;
+  }
+
+  /**
+   * Generates a random permutation of 0 to n-1 (Fisher-Yates).
+   *
+   * @param n		the number of indices
+   * @param seed	the seed to use
+   * @return		the permutation
+   */
+  public static int[] permutation(int n, long seed) {
+    return permutation(n, new SplittableRandom(seed));
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Iterator<Long> sample(RandomAccessDataset dataset) {
+    final int[]		indices;
+    SplittableRandom	epoch;
+
+    synchronized (this) {
+      epoch = random.split();
+    }
+    indices = permutation(Math.toIntExact(dataset.size()), epoch);
+
+    return new Iterator<Long>() {
+      protected int position = 0;
+
+      @Override
+      public boolean hasNext() {
+	return (position < indices.length);
+      }
+
+      @Override
+      public Long next() {
+	if (!hasNext())
+	  throw new NoSuchElementException();
+	return (long) indices[position++];
+      }
+    };
+  }
+}
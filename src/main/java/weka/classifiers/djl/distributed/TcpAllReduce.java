@@ -0,0 +1,344 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * TcpAllReduce.java
+ * Copyright (C) 2025 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.classifiers.djl.distributed;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+
+/**
+ * Simple collective communication over TCP between a coordinator (rank 0)
+ * and its workers (rank 1 to N), using a star topology: for an all-reduce,
+ * the workers send their values to the coordinator, which averages them
+ * with its own and sends the result back. Besides all-reduce, the
+ * coordinator can broadcast values and send arbitrary messages to the
+ * individual workers.
+ * <br>
+ * All reads are subject to a timeout, i.e., a process that stops responding
+ * (e.g., a hung worker or a lost connection) results in an exception rather
+ * than blocking the other processes forever.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class TcpAllReduce
+  implements Closeable {
+
+  /** the default timeout in seconds for connecting and reading. */
+  public static final int DEFAULT_TIMEOUT = 600;
+
+  /** the interval in msec for checking the spawned workers while accepting connections. */
+  public static final int POLL_INTERVAL = 1000;
+
+  /** the rank of this process (0 = coordinator). */
+  protected int m_Rank;
+
+  /** the total number of processes. */
+  protected int m_WorldSize;
+
+  /** the sockets (coordinator: one per worker, worker: one for coordinator). */
+  protected Socket[] m_Sockets;
+
+  /** the input streams of the sockets. */
+  protected DataInputStream[] m_Inputs;
+
+  /** the output streams of the sockets. */
+  protected DataOutputStream[] m_Outputs;
+
+  /** the buffer for converting between bytes and floats. */
+  protected byte[] m_Buffer;
+
+  /**
+   * Initializes the communication.
+   *
+   * @param rank	the rank of this process
+   * @param worldSize	the total number of processes
+   * @param sockets	the sockets to use
+   * @param timeout	the timeout in seconds for reading
+   * @throws IOException	if the streams cannot be obtained
+   */
+  protected TcpAllReduce(int rank, int worldSize, Socket[] sockets, int timeout) throws IOException {
+    int		i;
+
+    m_Rank      = rank;
+    m_WorldSize = worldSize;
+    m_Sockets   = sockets;
+    m_Inputs    = new DataInputStream[sockets.length];
+    m_Outputs   = new DataOutputStream[sockets.length];
+    m_Buffer    = new byte[0];
+    for (i = 0; i < sockets.length; i++) {
+      sockets[i].setTcpNoDelay(true);
+      sockets[i].setSoTimeout(timeout * 1000);
+      m_Inputs[i]  = new DataInputStream(new BufferedInputStream(sockets[i].getInputStream()));
+      m_Outputs[i] = new DataOutputStream(new BufferedOutputStream(sockets[i].getOutputStream()));
+    }
+  }
+
+  /**
+   * Checks whether any of the spawned worker processes has terminated.
+   *
+   * @param processes	the spawned processes
+   * @throws IOException	if a process has terminated
+   */
+  protected static void checkProcesses(List<Process> processes) throws IOException {
+    for (Process process: processes) {
+      if (!process.isAlive())
+	throw new IOException("Worker process terminated prematurely with exit code " + process.exitValue() + "!");
+    }
+  }
+
+  /**
+   * Closes the sockets, ignoring any errors.
+   *
+   * @param sockets	the sockets to close, can contain nulls
+   */
+  protected static void closeSockets(Socket[] sockets) {
+    for (Socket socket: sockets) {
+      if (socket == null)
+	continue;
+      try {
+	socket.close();
+      }
+      catch (Exception e) {
+	// ignored
+      }
+    }
+  }
+
+  /**
+   * Waits for the workers to connect and assigns their ranks. While waiting,
+   * the spawned worker processes (if any) get checked whether they are
+   * still alive.
+   *
+   * @param server	the socket to accept the connections on
+   * @param numWorkers	the number of workers to wait for
+   * @param processes	the spawned worker processes, empty if started manually
+   * @param timeout	the timeout in seconds for all workers to connect and for reading
+   * @return		the communication of the coordinator
+   * @throws IOException	if accepting the workers fails (or times out)
+   */
+  public static TcpAllReduce coordinator(ServerSocket server, int numWorkers, List<Process> processes, int timeout) throws IOException {
+    TcpAllReduce	result;
+    Socket[]		sockets;
+    long		end;
+    int			i;
+
+    sockets = new Socket[numWorkers];
+    end     = System.currentTimeMillis() + timeout * 1000L;
+    server.setSoTimeout(POLL_INTERVAL);
+    try {
+      i = 0;
+      while (i < numWorkers) {
+	try {
+	  sockets[i] = server.accept();
+	  i++;
+	}
+	catch (SocketTimeoutException e) {
+	  checkProcesses(processes);
+	  if (System.currentTimeMillis() >= end)
+	    throw new SocketTimeoutException("Only " + i + " of " + numWorkers + " worker(s) connected within " + timeout + " seconds!");
+	}
+      }
+      result = new TcpAllReduce(0, numWorkers + 1, sockets, timeout);
+    }
+    catch (IOException e) {
+      closeSockets(sockets);
+      throw e;
+    }
+
+    for (i = 0; i < numWorkers; i++) {
+      result.m_Outputs[i].writeInt(i + 1);
+      result.m_Outputs[i].writeInt(numWorkers + 1);
+      result.m_Outputs[i].flush();
+    }
+
+    return result;
+  }
+
+  /**
+   * Connects to the coordinator and obtains the rank.
+   *
+   * @param host	the host of the coordinator
+   * @param port	the port of the coordinator
+   * @param timeout	the timeout in seconds for reading
+   * @return		the communication of the worker
+   * @throws IOException	if connecting fails
+   */
+  public static TcpAllReduce worker(String host, int port, int timeout) throws IOException {
+    TcpAllReduce	result;
+
+    result             = new TcpAllReduce(-1, -1, new Socket[]{new Socket(host, port)}, timeout);
+    result.m_Rank      = result.m_Inputs[0].readInt();
+    result.m_WorldSize = result.m_Inputs[0].readInt();
+
+    return result;
+  }
+
+  /**
+   * Returns the rank of this process.
+   *
+   * @return		the rank, 0 for the coordinator
+   */
+  public int getRank() {
+    return m_Rank;
+  }
+
+  /**
+   * Returns the total number of processes.
+   *
+   * @return		the number of processes
+   */
+  public int getWorldSize() {
+    return m_WorldSize;
+  }
+
+  /**
+   * Returns whether this process is the coordinator.
+   *
+   * @return		true if coordinator
+   */
+  public boolean isCoordinator() {
+    return (m_Rank == 0);
+  }
+
+  /**
+   * Sends the message to the specified worker (coordinator only).
+   *
+   * @param rank	the rank of the worker
+   * @param message	the message
+   * @throws IOException	if sending fails
+   */
+  public void send(int rank, byte[] message) throws IOException {
+    if (!isCoordinator())
+      throw new IllegalStateException("Only the coordinator can send messages!");
+    m_Outputs[rank - 1].writeInt(message.length);
+    m_Outputs[rank - 1].write(message);
+    m_Outputs[rank - 1].flush();
+  }
+
+  /**
+   * Receives a message from the coordinator (worker only).
+   *
+   * @return		the message
+   * @throws IOException	if receiving fails
+   */
+  public byte[] receive() throws IOException {
+    byte[]	result;
+
+    if (isCoordinator())
+      throw new IllegalStateException("The coordinator cannot receive messages!");
+    result = new byte[m_Inputs[0].readInt()];
+    m_Inputs[0].readFully(result);
+
+    return result;
+  }
+
+  /**
+   * Writes the values to the stream.
+   *
+   * @param out		the stream to write to
+   * @param values	the values to write
+   * @throws IOException	if writing fails
+   */
+  protected void writeFloats(DataOutputStream out, float[] values) throws IOException {
+    if (m_Buffer.length != values.length * 4)
+      m_Buffer = new byte[values.length * 4];
+    ByteBuffer.wrap(m_Buffer).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().put(values);
+    out.write(m_Buffer);
+    out.flush();
+  }
+
+  /**
+   * Reads the values from the stream.
+   *
+   * @param in		the stream to read from
+   * @param values	the array to store the values in
+   * @throws IOException	if reading fails
+   */
+  protected void readFloats(DataInputStream in, float[] values) throws IOException {
+    if (m_Buffer.length != values.length * 4)
+      m_Buffer = new byte[values.length * 4];
+    in.readFully(m_Buffer);
+    ByteBuffer.wrap(m_Buffer).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(values);
+  }
+
+  /**
+   * Sends the values of the coordinator to all workers, which store them in
+   * the supplied array (must have the same length).
+   *
+   * @param values	the values to send (coordinator) or receive (worker)
+   * @throws IOException	if communication fails
+   */
+  public void broadcast(float[] values) throws IOException {
+    if (isCoordinator()) {
+      for (DataOutputStream out: m_Outputs)
+	writeFloats(out, values);
+    }
+    else {
+      readFloats(m_Inputs[0], values);
+    }
+  }
+
+  /**
+   * Averages the values across all processes, in place. All processes
+   * must supply arrays of the same length.
+   *
+   * @param values	the values to average
+   * @throws IOException	if communication fails
+   */
+  public void allReduce(float[] values) throws IOException {
+    float[]	received;
+    int		i;
+    int		n;
+
+    if (isCoordinator()) {
+      received = new float[values.length];
+      for (i = 0; i < m_Inputs.length; i++) {
+	readFloats(m_Inputs[i], received);
+	for (n = 0; n < values.length; n++)
+	  values[n] += received[n];
+      }
+      for (n = 0; n < values.length; n++)
+	values[n] /= m_WorldSize;
+      broadcast(values);
+    }
+    else {
+      writeFloats(m_Outputs[0], values);
+      readFloats(m_Inputs[0], values);
+    }
+  }
+
+  /**
+   * Closes the connections.
+   */
+  @Override
+  public void close() {
+    closeSockets(m_Sockets);
+  }
+}
@@ -0,0 +1,47 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * TabNetClassificationLossGenerator.java
+ * Copyright (C) 2025 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.classifiers.djl.trainingconfiggenerator;
+
+import ai.djl.training.DefaultTrainingConfig;
+import ai.djl.training.TrainingConfig;
+import ai.djl.training.listener.TrainingListener;
+import ai.djl.training.loss.TabNetClassificationLoss;
+
+/**
+ * Generates a default config using {@link TabNetClassificationLoss}.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class TabNetClassificationLossGenerator
+  extends AbstractTrainingConfigGenerator {
+
+  /**
+   * Generates the training configuration to use.
+   *
+   * @return the configuration
+   */
+  @Override
+  protected TrainingConfig doGenerate() {
+    return new DefaultTrainingConfig(
+      new TabNetClassificationLoss())
+	     .addTrainingListeners(TrainingListener.Defaults.basic());
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * FloatFeaturesTranslator.java
+ * Copyright (C) 2025 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.classifiers.djl.translator;
+
+import ai.djl.ndarray.NDList;
+import ai.djl.translate.Batchifier;
+import ai.djl.translate.Translator;
+import ai.djl.translate.TranslatorContext;
+
+/**
+ * Translator for networks that receive the already encoded features as
+ * float array, avoiding any string conversion
+ * (see {@link weka.classifiers.djl.dataset.InstancesDataset#encodeFeatures(weka.core.Instance)}).
+ * The output of the network gets returned as float array, optionally
+ * turned into probabilities via softmax.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class FloatFeaturesTranslator
+  implements Translator<float[], float[]> {
+
+  /** the number of features. */
+  protected int m_NumFeatures;
+
+  /** whether to apply softmax to the output. */
+  protected boolean m_Softmax;
+
+  /**
+   * Initializes the translator.
+   *
+   * @param numFeatures	the number of features to expect
+   * @param softmax	whether to apply softmax to the output
+   */
+  public FloatFeaturesTranslator(int numFeatures, boolean softmax) {
+    m_NumFeatures = numFeatures;
+    m_Softmax     = softmax;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Batchifier getBatchifier() {
+    return Batchifier.STACK;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public NDList processInput(TranslatorContext ctx, float[] input) throws Exception {
+    if (input.length != m_NumFeatures)
+      throw new IllegalArgumentException("Expected " + m_NumFeatures + " features, but got: " + input.length);
+    return new NDList(ctx.getNDManager().create(input));
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public float[] processOutput(TranslatorContext ctx, NDList list) throws Exception {
+    if (m_Softmax)
+      return list.get(0).softmax(-1).toFloatArray();
+    else
+      return list.get(0).toFloatArray();
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * PrecisionTranslator.java
+ * Copyright (C) 2025 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.classifiers.djl.translator;
+
+import ai.djl.ndarray.NDArray;
+import ai.djl.ndarray.NDList;
+import ai.djl.ndarray.types.DataType;
+import ai.djl.translate.Batchifier;
+import ai.djl.translate.Translator;
+import ai.djl.translate.TranslatorContext;
+
+/**
+ * Wraps a translator for a network that uses a different precision:
+ * the inputs get cast to the data type of the network and the outputs
+ * back to float32 before the base translator processes them.
+ *
+ * @param <I> the input type
+ * @param <O> the output type
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class PrecisionTranslator<I, O>
+  implements Translator<I, O> {
+
+  /** the base translator. */
+  protected Translator<I, O> m_Translator;
+
+  /** the data type of the network. */
+  protected DataType m_DataType;
+
+  /**
+   * Initializes the translator.
+   *
+   * @param translator	the base translator
+   * @param dataType	the data type of the network
+   */
+  public PrecisionTranslator(Translator<I, O> translator, DataType dataType) {
+    m_Translator = translator;
+    m_DataType   = dataType;
+  }
+
+  /**
+   * Casts all arrays in the list to the specified data type.
+   *
+   * @param list	the arrays to cast
+   * @param dataType	the data type to cast to
+   * @return		the cast arrays
+   */
+  protected NDList cast(NDList list, DataType dataType) {
+    NDList	result;
+
+    result = new NDList(list.size());
+    for (NDArray array: list)
+      result.add(array.getDataType() == dataType ? array : array.toType(dataType, false));
+
+    return result;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void prepare(TranslatorContext ctx) throws Exception {
+    m_Translator.prepare(ctx);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Batchifier getBatchifier() {
+    return m_Translator.getBatchifier();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public NDList processInput(TranslatorContext ctx, I input) throws Exception {
+    return cast(m_Translator.processInput(ctx, input), m_DataType);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public O processOutput(TranslatorContext ctx, NDList list) throws Exception {
+    return m_Translator.processOutput(ctx, cast(list, DataType.FLOAT32));
+  }
+}
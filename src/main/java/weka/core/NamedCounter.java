@@ -23,13 +23,20 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.Hashtable;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Provides counters that can be referenced by a name.
+ * Thread-safe without a global lock: the counters are atomic integers stored
+ * in a concurrent map and all updates happen atomically within the map, i.e.,
+ * they are serialized against clearing the counters. Iterating the names is
+ * weakly consistent, sorting them uses a snapshot of the counts.
  *
  * @author  fracpete (fracpete at waikato dot ac dot nz)
  */
@@ -37,13 +44,16 @@ public class NamedCounter
     implements Serializable {
 
   /** for serialization. */
-  private static final long serialVersionUID = -690032882282626773L;
+  private static final long serialVersionUID = 3842217049935640182L;
 
   /**
    * Comparator for sorting the names based on the counts associated with them.
    *
    * @author  fracpete (fracpete at waikato dot ac dot nz)
+   * @deprecated no longer used by {@link NamedCounter#names(boolean)}, which
+   * sorts a snapshot of the counts
    */
+  @Deprecated
   public static class CounterComparator
       implements Comparator<String> {
 
@@ -85,20 +95,37 @@ public class NamedCounter
   }
 
   /** for storing the counts. */
-  protected Hashtable<String,Integer> m_Counts;
+  protected ConcurrentHashMap<String,AtomicInteger> m_Counts;
 
   /**
    * Initializes the counter.
    */
   public NamedCounter() {
     super();
-    m_Counts = new Hashtable<>();
+    m_Counts = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Returns the counter for the name, creating it if necessary. Only for
+   * reading, as a concurrent {@link #clear()} may remove it from the map.
+   *
+   * @param name	the name of the counter
+   * @return		the counter
+   */
+  protected AtomicInteger counter(String name) {
+    AtomicInteger	result;
+
+    result = m_Counts.get(name);
+    if (result == null)
+      result = m_Counts.computeIfAbsent(name, k -> new AtomicInteger());
+
+    return result;
   }
 
   /**
    * Clears the counter.
    */
-  public synchronized void clear() {
+  public void clear() {
     m_Counts.clear();
   }
 
@@ -107,8 +134,8 @@ public class NamedCounter
    *
    * @param name	the name of the counter
    */
-  public synchronized void clear(String name) {
-    m_Counts.put(name, 0);
+  public void clear(String name) {
+    set(name, 0);
   }
 
   /**
@@ -117,8 +144,13 @@ public class NamedCounter
    * @param name	the name of the counter
    * @param count	the value to use
    */
-  public synchronized void set(String name, int count) {
-    m_Counts.put(name, count);
+  public void set(String name, int count) {
+    m_Counts.compute(name, (k, v) -> {
+      if (v == null)
+	return new AtomicInteger(count);
+      v.set(count);
+      return v;
+    });
   }
 
   /**
@@ -127,10 +159,8 @@ public class NamedCounter
    * @param name	the name of the counter
    * @return		the current counter value
    */
-  public synchronized int current(String name) {
-    if (!m_Counts.containsKey(name))
-      m_Counts.put(name, 0);
-    return m_Counts.get(name);
+  public int current(String name) {
+    return counter(name).get();
   }
 
   /**
@@ -139,9 +169,18 @@ public class NamedCounter
    * @param name	the name of the counter
    * @return		the incremented counter
    */
-  public synchronized int next(String name) {
-    m_Counts.put(name, current(name) + 1);
-    return m_Counts.get(name);
+  public int next(String name) {
+    final int[]	result;
+
+    result = new int[1];
+    m_Counts.compute(name, (k, v) -> {
+      if (v == null)
+	v = new AtomicInteger();
+      result[0] = v.incrementAndGet();
+      return v;
+    });
+
+    return result[0];
   }
 
   /**
@@ -151,7 +190,7 @@ public class NamedCounter
    * @param limit	the limit to check
    * @return		true if limit reached (or above)
    */
-  public synchronized boolean hasReached(String name, int limit) {
+  public boolean hasReached(String name, int limit) {
     return (current(name) >= limit);
   }
 
@@ -161,16 +200,16 @@ public class NamedCounter
    * @param name	the name of the counter
    * @return		true if counter present
    */
-  public synchronized boolean has(String name) {
+  public boolean has(String name) {
     return m_Counts.containsKey(name);
   }
 
   /**
-   * Returns the currently stored names.
+   * Returns the currently stored names (weakly consistent).
    *
    * @return		the name enumeration
    */
-  public synchronized Iterator<String> names() {
+  public Iterator<String> names() {
     return m_Counts.keySet().iterator();
   }
 
@@ -181,13 +220,16 @@ public class NamedCounter
    * 			otherwise in descending manner
    * @return		the name enumeration
    */
-  public synchronized Iterator<String> names(boolean asc) {
-    List<String>	result;
-    CounterComparator	comp;
+  public Iterator<String> names(boolean asc) {
+    List<String>		result;
+    final Map<String,Integer>	snapshot;
+
+    snapshot = new HashMap<>();
+    for (Map.Entry<String,AtomicInteger> entry: m_Counts.entrySet())
+      snapshot.put(entry.getKey(), entry.getValue().get());
 
-    result = new ArrayList<>(m_Counts.keySet());
-    comp   = new CounterComparator(this);
-    result.sort(comp);
+    result = new ArrayList<>(snapshot.keySet());
+    result.sort(Comparator.comparingInt(snapshot::get));
 
     if (!asc)
       Collections.reverse(result);
@@ -196,11 +238,11 @@ public class NamedCounter
   }
 
   /**
-   * Returns the currently stored names.
+   * Returns the currently stored names (weakly consistent view).
    *
    * @return		the name set
    */
-  public synchronized Set<String> nameSet() {
+  public Set<String> nameSet() {
     return m_Counts.keySet();
   }
 
@@ -209,7 +251,7 @@ public class NamedCounter
    *
    * @return		the number of stored names
    */
-  public synchronized int size() {
+  public int size() {
     return m_Counts.size();
   }
 
@@ -219,7 +261,7 @@ public class NamedCounter
    * @return		the string representation
    */
   @Override
-  public synchronized String toString() {
+  public String toString() {
     return m_Counts.toString();
   }
 }
@@ -21,19 +21,19 @@
 package weka.core;
 
 import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Class for creating unique IDs.
+ * Class for creating unique IDs. Thread-safe without any locking: the
+ * counter is atomic and the PID of the virtual machine only gets
+ * determined once.
  *
  * @author FracPete (fracpete at waikato dot ac dot nz)
  */
 public class UniqueIDs {
 
   /** the counter. */
-  protected static long m_Counter;
-  static {
-    m_Counter = 0;
-  }
+  protected static final AtomicLong m_Counter = new AtomicLong();
 
   /** the named counter. */
   protected static NamedCounter m_NamedCounter;
@@ -41,18 +41,31 @@ public class UniqueIDs {
     m_NamedCounter = new NamedCounter();
   }
 
+  /** the PID of the virtual machine. */
+  protected static final long m_PID = determineVirtualMachinePID();
+
+  /** the PID of the virtual machine in hex. */
+  protected static final String m_PIDHex = Long.toHexString(m_PID);
+
   /**
-   * Returns the PID of the virtual machine. Caution: it's a hack and can break
-   * anytime. Do NOT rely on it. Based on <a href=
+   * Determines the PID of the virtual machine. Falls back on parsing the
+   * name of the runtime MX bean (based on <a href=
    * "http://blog.igorminar.com/2007/03/how-java-application-can-discover-its.html"
-   * target="_blank">this blog entry</a>.
+   * target="_blank">this blog entry</a>) if the process handle is not available.
    *
    * @return the PID or -1 in case of an error
    */
-  public static long getVirtualMachinePID() {
+  protected static long determineVirtualMachinePID() {
     long result;
     String name;
 
+    try {
+      return ProcessHandle.current().pid();
+    }
+    catch (Exception e) {
+      // ignored
+    }
+
     name = ManagementFactory.getRuntimeMXBean().getName();
 
     try {
@@ -65,16 +78,27 @@ public class UniqueIDs {
     return result;
   }
 
+  /**
+   * Returns the PID of the virtual machine (determined once).
+   *
+   * @return the PID or -1 in case of an error
+   */
+  public static long getVirtualMachinePID() {
+    return m_PID;
+  }
+
   /**
    * Creates a new unique ID, using current nanotime, virtual machine PID,
    * counter (within JVM session).
    *
    * @return		the generated ID
    */
-  public static synchronized String next() {
-    return Long.toHexString(System.nanoTime())
-	+ "-" + Long.toHexString(getVirtualMachinePID())
-	+ "-" + Long.toHexString(nextLong());
+  public static String next() {
+    return new StringBuilder(48)
+	.append(Long.toHexString(System.nanoTime()))
+	.append('-').append(m_PIDHex)
+	.append('-').append(Long.toHexString(nextLong()))
+	.toString();
   }
 
   /**
@@ -82,9 +106,8 @@ public class UniqueIDs {
    *
    * @return		the next ID
    */
-  public static synchronized long nextLong() {
-    m_Counter++;
-    return m_Counter;
+  public static long nextLong() {
+    return m_Counter.incrementAndGet();
   }
 
   /**
@@ -93,7 +116,7 @@ public class UniqueIDs {
    * @param name	the named ID counter
    * @return		the next ID
    */
-  public static synchronized int nextInt(String name) {
+  public static int nextInt(String name) {
     return m_NamedCounter.next(name);
   }
 }
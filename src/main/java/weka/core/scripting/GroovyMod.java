@@ -21,9 +21,14 @@
 package weka.core.scripting;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.Serializable;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import weka.core.RevisionHandler;
 import weka.core.RevisionUtils;
@@ -49,6 +54,36 @@ public class GroovyMod implements Serializable, RevisionHandler {
   /** the classname of the Groovy classloader. */
   public final static String CLASS_GROOVYCLASSLOADER = "groovy.lang.GroovyClassLoader";
 
+  /** the maximum number of compiled modules to cache. */
+  public final static int MAX_CACHE_SIZE = 64;
+
+  /**
+   * A compiled module in the cache. Neither the class loader used for
+   * compiling nor the compiled class get kept alive by the cache: the
+   * class (and with it its Groovy classloader) can get garbage collected
+   * once no longer in use and memory is required.
+   */
+  protected static class CacheEntry {
+
+    /** the timestamp of the module file when it got compiled. */
+    public long timestamp;
+
+    /** the class loader that was used as parent. */
+    public WeakReference<ClassLoader> classLoader;
+
+    /** the compiled class. */
+    public SoftReference<Class<?>> compiled;
+  }
+
+  /** the compiled modules (key: canonical module path), least recently used first. */
+  protected static Map<String, CacheEntry> m_ClassCache = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+    private static final long serialVersionUID = 2913576432856310297L;
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+      return (size() > MAX_CACHE_SIZE);
+    }
+  };
+
   /** whether the Groovy classes are in the Classpath. */
   protected static boolean m_Present = false;
   static {
@@ -173,6 +208,9 @@ public class GroovyMod implements Serializable, RevisionHandler {
     Object result;
     Object interpreter;
     Class<?> cls;
+    String key;
+    long timestamp;
+    CacheEntry entry;
 
     result = null;
 
@@ -181,15 +219,48 @@ public class GroovyMod implements Serializable, RevisionHandler {
       return result;
     }
 
-    interpreter = newClassLoader(classLoader);
-    if (interpreter == null) {
-      return result;
+    // modules only get compiled again if they changed
+    try {
+      key = file.getCanonicalPath();
+    } catch (IOException e) {
+      key = file.getAbsolutePath();
+    }
+    timestamp = file.lastModified();
+    cls = null;
+    synchronized (m_ClassCache) {
+      entry = m_ClassCache.get(key);
+      if ((entry != null) && (entry.timestamp == timestamp)
+	&& (entry.classLoader.get() == classLoader))
+	cls = entry.compiled.get();
+    }
+
+    if (cls == null) {
+      interpreter = newClassLoader(classLoader);
+      if (interpreter == null) {
+	return result;
+      }
+
+      try {
+	cls = (Class<?>) invoke(interpreter, "parseClass",
+	  new Class[] { File.class }, new Object[] { file });
+	if (cls != null) {
+	  // replaces any stale entry of the module
+	  entry = new CacheEntry();
+	  entry.timestamp = timestamp;
+	  entry.classLoader = new WeakReference<>(classLoader);
+	  entry.compiled = new SoftReference<>(cls);
+	  synchronized (m_ClassCache) {
+	    m_ClassCache.put(key, entry);
+	  }
+	}
+      } catch (Exception e) {
+	e.printStackTrace();
+      }
     }
 
     try {
-      cls = (Class<?>) invoke(interpreter, "parseClass",
-	new Class[] { File.class }, new Object[] { file });
-      result = cls.newInstance();
+      if (cls != null)
+	result = cls.newInstance();
     } catch (Exception e) {
       e.printStackTrace();
     }
@@ -197,6 +268,15 @@ public class GroovyMod implements Serializable, RevisionHandler {
     return result;
   }
 
+  /**
+   * Removes all compiled modules from the cache.
+   */
+  public static void clearCache() {
+    synchronized (m_ClassCache) {
+      m_ClassCache.clear();
+    }
+  }
+
   /**
    * executes the specified method and returns the result, if any.
    *